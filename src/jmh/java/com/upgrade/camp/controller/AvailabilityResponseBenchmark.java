@@ -0,0 +1,101 @@
+package com.upgrade.camp.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.upgrade.camp.controller.response.AvailabilityFormat;
+import com.upgrade.camp.controller.response.AvailableDaysResponse;
+import com.upgrade.camp.controller.response.CompactAvailabilityResponse;
+import com.upgrade.camp.guava.AvailabilityCacheProperties;
+import com.upgrade.camp.guava.AvailabilityResponseCache;
+import com.upgrade.camp.guava.AvailabilitySnapshot;
+import com.upgrade.camp.guava.BlockAvailability;
+import com.upgrade.camp.guava.CacheKey;
+import com.upgrade.camp.model.FreeDays;
+import com.upgrade.camp.model.Stay;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * serialization of one availability window in each format against serving the body already cached for its tag,
+ * run with {@code -prof gc} for the allocation side
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AvailabilityResponseBenchmark {
+
+  private static final long SEED = 42L;
+
+  @Param({"30", "365"})
+  private int days;
+
+  private ObjectMapper objectMapper;
+  private FreeDays freeDays;
+  private List<LocalDateTime> dates;
+  private AvailabilityResponseCache responseCache;
+  private AvailabilitySnapshot snapshot;
+
+  @Setup
+  public void setUp(){
+    objectMapper = new ObjectMapper().registerModule(new JavaTimeModule())
+                                     .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+    long startDay = LocalDate.now().toEpochDay();
+    freeDays = new FreeDays(Stay.of(startDay,startDay + days));
+    dates = new ArrayList<>();
+    Random random = new Random(SEED);
+    for(long day = startDay; day < startDay + days; day++){
+      if(random.nextInt(4) != 0){
+        freeDays.markFree(day);
+        dates.add(Stay.checkInOf(day));
+      }
+    }
+    List<CacheKey> keys = CacheKey.blocksBetween(startDay,startDay + days);
+    List<BlockAvailability> blocks = keys.stream().map(key -> new BlockAvailability(-1L)).collect(Collectors.toList());
+    snapshot = new AvailabilitySnapshot(Stay.of(startDay,startDay + days),keys,blocks);
+    responseCache = new AvailabilityResponseCache();
+    ReflectionTestUtils.setField(responseCache,"objectMapper",objectMapper);
+    ReflectionTestUtils.setField(responseCache,"cacheProperties",new AvailabilityCacheProperties());
+    ReflectionTestUtils.setField(responseCache,"meterRegistry",new SimpleMeterRegistry());
+    responseCache.buildCache();
+  }
+
+  @Benchmark
+  public byte[] dates() throws Exception {
+    return objectMapper.writeValueAsBytes(new AvailableDaysResponse(dates,null,Boolean.FALSE));
+  }
+
+  @Benchmark
+  public byte[] bitmask() throws Exception {
+    return compact(AvailabilityFormat.BITMASK);
+  }
+
+  @Benchmark
+  public byte[] ranges() throws Exception {
+    return compact(AvailabilityFormat.RANGES);
+  }
+
+  /**
+   * what a hit costs the endpoint: reading the blocks already happened, only the tag is built and looked up
+   */
+  @Benchmark
+  public byte[] cachedResponse(){
+    return responseCache.get(AvailabilityResponseCache.eTagOf(snapshot,AvailabilityFormat.DATES),snapshot,AvailabilityFormat.DATES);
+  }
+
+  private byte[] compact(AvailabilityFormat format) throws Exception {
+    return objectMapper.writeValueAsBytes(new CompactAvailabilityResponse(freeDays,format,null,Boolean.FALSE));
+  }
+}
@@ -0,0 +1,62 @@
+package com.upgrade.camp.guava;
+
+import com.google.common.cache.LoadingCache;
+import com.upgrade.camp.service.occupancy.DayOccupancyIndex;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * cost of an availability cache miss: one block loaded from the occupancy index
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AvailabilityBenchmark {
+
+  private static final long SEED = 42L;
+
+  /**
+   * reservations booked around today
+   */
+  @Param({"0", "100", "1000"})
+  private int reservations;
+
+  private LoadingCache<CacheKey,BlockAvailability> cache;
+  private CacheKey key;
+
+  @Setup
+  public void setUp(){
+    DayOccupancyIndex occupancyIndex = new DayOccupancyIndex();
+    long today = LocalDate.now().toEpochDay();
+    Random random = new Random(SEED);
+    for(int i = 0; i < reservations; i++){
+      long startDay = today + random.nextInt(365);
+      occupancyIndex.occupy(startDay,startDay + 1 + random.nextInt(3));
+    }
+    SearchesCacheProducer producer = new SearchesCacheProducer();
+    ReflectionTestUtils.setField(producer,"occupancyIndex",occupancyIndex);
+    ReflectionTestUtils.setField(producer,"cacheProperties",new AvailabilityCacheProperties());
+    ReflectionTestUtils.setField(producer,"meterRegistry",new SimpleMeterRegistry());
+    cache = producer.buildCache();
+    key = CacheKey.ofDay(today);
+  }
+
+  @Benchmark
+  public BlockAvailability loadBlock(){
+    cache.invalidate(key);
+    return cache.getUnchecked(key);
+  }
+
+  @Benchmark
+  public BlockAvailability cachedBlock(){
+    return cache.getUnchecked(key);
+  }
+}
@@ -0,0 +1,124 @@
+package com.upgrade.camp.mappers;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.NullNode;
+import com.google.common.io.Resources;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ObjectTransformerBenchmark {
+
+    private static final String OBJECT_API_NAME = "object";
+    private static final String DOT = ".";
+
+    /**
+     * shipment lines per document
+     */
+    @Param({"1", "10", "100"})
+    private int lines;
+
+    /**
+     * 1 for documents holding every mapped property, otherwise only one of every {@code sparseness} is present
+     */
+    @Param({"1", "3"})
+    private int sparseness;
+
+    private ObjectTransformer objectTransformer;
+    private ObjectTransformer compiledObjectTransformer;
+    private StreamingObjectTransformer streamingObjectTransformer;
+    private JsonNode source;
+    private byte[] serializedSource;
+    private List<String> sourceKeys;
+    private List<String[]> sourcePaths;
+
+    @Setup
+    public void setUp() throws IOException {
+        objectTransformer = new ObjectTransformer();
+        compiledObjectTransformer = new ObjectTransformer(MissingValuePolicy.NULL, NullNode.getInstance(), true);
+        streamingObjectTransformer = new StreamingObjectTransformer(objectTransformer);
+        source = ShipmentDocuments.sourceFor(OBJECT_API_NAME, lines, sparseness);
+        serializedSource = new ObjectMapper().writeValueAsBytes(source);
+        sourceKeys = new ArrayList<>();
+        sourcePaths = new ArrayList<>();
+        for (String line : Resources.readLines(Resources.getResource("transformation/" + OBJECT_API_NAME + "_map"), StandardCharsets.UTF_8)) {
+            String sourceKey = line.split(",")[1];
+            if (!sourceKey.contains("l_") && !sourceKey.endsWith("?")) {
+                sourceKeys.add(sourceKey);
+                sourcePaths.add(sourceKey.split("\\."));
+            }
+        }
+    }
+
+    @Benchmark
+    public JsonNode transformIntoFormat() {
+        return objectTransformer.transformIntoFormat(OBJECT_API_NAME, source);
+    }
+
+    @Benchmark
+    public JsonNode transformIntoFormatCompiled() {
+        return compiledObjectTransformer.transformIntoFormat(OBJECT_API_NAME, source);
+    }
+
+    /**
+     * every plain source path of the map looked up the way PropertyMapper did before missing values stopped
+     * throwing: a missing path throws and the caller catches it to write null
+     */
+    @Benchmark
+    public int lookupThrowingBaseline() {
+        int found = 0;
+        for (String sourceKey : sourceKeys) {
+            try {
+                JsonNode node = throwingLastNode(source, sourceKey);
+                found += node.get(sourceKey.substring(sourceKey.lastIndexOf(DOT) + 1)) != null ? 1 : 0;
+            } catch (Exception e) {
+                continue;
+            }
+        }
+        return found;
+    }
+
+    @Benchmark
+    public int lookupExceptionFree() {
+        int found = 0;
+        for (String[] sourcePath : sourcePaths) {
+            found += PropertyMapper.getValue(source, sourcePath) != null ? 1 : 0;
+        }
+        return found;
+    }
+
+    /**
+     * bytes in, bytes out, the source document is never built as a whole tree
+     */
+    @Benchmark
+    public byte[] streamIntoFormat() throws IOException {
+        ByteArrayOutputStream target = new ByteArrayOutputStream(serializedSource.length);
+        streamingObjectTransformer.transformEachIntoFormat(OBJECT_API_NAME, new ByteArrayInputStream(serializedSource), target);
+        return target.toByteArray();
+    }
+
+    private static JsonNode throwingLastNode(JsonNode source, String sourceKey) throws Exception {
+        if (source != null && sourceKey.contains(DOT)) {
+            String keyRoot = sourceKey.substring(0, sourceKey.indexOf(DOT));
+            String keyChain = sourceKey.substring(sourceKey.indexOf(DOT) + 1);
+            return throwingLastNode(source.get(keyRoot), keyChain);
+        }
+        if (source != null && source.has(sourceKey)) {
+            return source;
+        }
+        throw new Exception(sourceKey);
+    }
+}
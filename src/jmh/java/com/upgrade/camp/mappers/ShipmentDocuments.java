@@ -0,0 +1,74 @@
+package com.upgrade.camp.mappers;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.io.Resources;
+import lombok.SneakyThrows;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static com.fasterxml.jackson.databind.node.JsonNodeFactory.instance;
+
+/**
+ * builds source documents holding every source path of a transformation map
+ */
+public class ShipmentDocuments {
+
+    private static final String LIST_PREFIX = "l_";
+    private static final String UNMAPPED = "?";
+
+    private ShipmentDocuments() {}
+
+    /**
+     * @param lines size of every list of objects in the document
+     */
+    public static JsonNode sourceFor(String objectApiName, int lines) {
+        return sourceFor(objectApiName, lines, 1);
+    }
+
+    /**
+     * @param sparseness only one of every {@code sparseness} source paths of the map is present in the document
+     */
+    @SneakyThrows
+    public static JsonNode sourceFor(String objectApiName, int lines, int sparseness) {
+        List<String> map = Resources.readLines(Resources.getResource("transformation/" + objectApiName + "_map"), StandardCharsets.UTF_8);
+        ObjectNode source = instance.objectNode();
+        for (int index = 0; index < map.size(); index++) {
+            String sourceKey = map.get(index).split(",")[1];
+            if (!sourceKey.endsWith(UNMAPPED) && index % sparseness == 0) {
+                fill(source, sourceKey.split("\\."), 0, lines);
+            }
+        }
+        return source;
+    }
+
+    private static void fill(ObjectNode node, String[] path, int depth, int lines) {
+        String segment = path[depth];
+        boolean list = segment.startsWith(LIST_PREFIX);
+        String name = list ? segment.substring(LIST_PREFIX.length()) : segment;
+        boolean last = depth == path.length - 1;
+        if (last && list) {
+            ArrayNode values = node.has(name) ? (ArrayNode) node.get(name) : node.putArray(name);
+            if (values.size() == 0) {
+                values.add(name + "-value");
+            }
+            return;
+        }
+        if (last) {
+            node.put(name, name + "-value");
+            return;
+        }
+        if (list) {
+            ArrayNode items = node.has(name) ? (ArrayNode) node.get(name) : node.putArray(name);
+            while (items.size() < lines) {
+                items.addObject();
+            }
+            items.forEach(item -> fill((ObjectNode) item, path, depth + 1, lines));
+            return;
+        }
+        ObjectNode child = node.has(name) ? (ObjectNode) node.get(name) : node.putObject(name);
+        fill(child, path, depth + 1, lines);
+    }
+}
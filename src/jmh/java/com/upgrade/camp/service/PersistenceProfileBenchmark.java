@@ -0,0 +1,155 @@
+package com.upgrade.camp.service;
+
+import com.upgrade.camp.CampApplication;
+import com.upgrade.camp.model.Reservation;
+import com.upgrade.camp.model.ReservationDates;
+import com.upgrade.camp.model.Stay;
+import com.upgrade.camp.repository.ReservationDayRepository;
+import com.upgrade.camp.repository.ReservationRepository;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.orm.jpa.SharedEntityManagerCreator;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * booking round trip and overlap query against a file-backed H2, on the default profile
+ * (sql and bound parameters logged, no batching) and on the prod one
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PersistenceProfileBenchmark {
+
+  /**
+   * past reservations already in the table
+   */
+  private static final int HISTORY = 10_000;
+
+  @Param({"default", "prod"})
+  private String profile;
+
+  private ConfigurableApplicationContext context;
+  private ReservationService reservationService;
+  private ReservationRepository reservationRepository;
+  private Stay stay;
+  private Stay pastStay;
+  private LocalDateTime beforeHistory;
+  private EntityManager entityManager;
+  private TransactionTemplate readOnlyTransaction;
+
+  @Setup
+  public void setUp(){
+    context = new SpringApplicationBuilder(CampApplication.class)
+        .web(WebApplicationType.NONE)
+        .profiles(profile)
+        .run("--spring.datasource.url=jdbc:h2:file:./target/h2/camp-benchmark-" + profile);
+    reservationService = context.getBean(ReservationService.class);
+    reservationRepository = context.getBean(ReservationRepository.class);
+    readOnlyTransaction = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+    readOnlyTransaction.setReadOnly(true);
+    entityManager = SharedEntityManagerCreator.createSharedEntityManager(context.getBean(EntityManagerFactory.class));
+    reservationRepository.truncate();
+    context.getBean(ReservationDayRepository.class).truncate();
+
+    long today = LocalDate.now().toEpochDay();
+    List<Reservation> history = new ArrayList<>(HISTORY);
+    for(int i = 0; i < HISTORY; i++){
+      Stay past = Stay.of(today - 2 * HISTORY + 2L * i,today - 2 * HISTORY + 2L * i + 1);
+      history.add(Reservation.builder()
+                             .uid(UUID.randomUUID().toString())
+                             .startDate(past.checkIn())
+                             .endDate(past.checkOut())
+                             .email("past@email.com")
+                             .fullName("past guest")
+                             .build());
+    }
+    reservationRepository.saveAll(history);
+    stay = Stay.of(today + 2,today + 5);
+    pastStay = Stay.of(today - HISTORY,today - HISTORY + 3);
+    beforeHistory = Stay.checkInOf(today - 3 * HISTORY);
+  }
+
+  @TearDown
+  public void tearDown(){
+    context.close();
+  }
+
+  /**
+   * books three nights and cancels them so every invocation finds the same free days
+   */
+  @Benchmark
+  public void bookAndCancel(){
+    Reservation reservation = Reservation.builder()
+                                         .startDate(stay.checkIn())
+                                         .endDate(stay.checkOut())
+                                         .email("email@email.com")
+                                         .fullName("full name")
+                                         .build();
+    reservationService.createReservation(reservation);
+    reservationService.deleteReservation(reservation.getUid(),reservation.getEmail());
+  }
+
+  /**
+   * the former count of the overlapping reservations, it reads every one of them before answering
+   */
+  @Benchmark
+  public Object countOverlaps(){
+    return readOnlyTransaction.execute(status -> entityManager.createNativeQuery(
+        "SELECT COUNT(*) FROM RESERVATION r WHERE r.END_DATE > :startDate AND r.START_DATE < :endDate")
+                                                               .setParameter("startDate",pastStay.checkIn())
+                                                               .setParameter("endDate",pastStay.checkOut())
+                                                               .getSingleResult());
+  }
+
+  /**
+   * the check a booking makes: nothing overlaps the requested stay, every past one ends before it
+   */
+  @Benchmark
+  public boolean overlapExists(){
+    return reservationRepository.existsReservationThatOverlapsWith(stay.checkIn(),stay.checkOut());
+  }
+
+  /**
+   * every reservation as managed entities, how the occupancy index used to be loaded
+   */
+  @Benchmark
+  public List<Reservation> hydrateAll(){
+    return reservationRepository.findAll();
+  }
+
+  /**
+   * the same rows read through the dates projection
+   */
+  @Benchmark
+  public List<ReservationDates> projectAll(){
+    return reservationRepository.findDatesCheckingOutAfter(beforeHistory);
+  }
+
+  /**
+   * the former BETWEEN ... OR BETWEEN ... overlap query, run in a read only transaction like the repository ones
+   */
+  @Benchmark
+  public Object betweenOverlapBaseline(){
+    return readOnlyTransaction.execute(status -> entityManager.createNativeQuery(
+        "SELECT COUNT(*) FROM RESERVATION r WHERE (START_DATE BETWEEN :startDate AND :endDate) OR (END_DATE BETWEEN :startDate AND :endDate)")
+                                                               .setParameter("startDate",stay.checkIn())
+                                                               .setParameter("endDate",stay.checkOut())
+                                                               .getSingleResult());
+  }
+}
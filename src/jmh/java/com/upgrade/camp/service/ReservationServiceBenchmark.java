@@ -0,0 +1,70 @@
+package com.upgrade.camp.service;
+
+import com.google.common.cache.LoadingCache;
+import com.upgrade.camp.guava.AvailabilityCacheProperties;
+import com.upgrade.camp.guava.BlockAvailability;
+import com.upgrade.camp.guava.CacheKey;
+import com.upgrade.camp.guava.SearchesCacheProducer;
+import com.upgrade.camp.service.occupancy.DayOccupancyIndex;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * cache invalidation of a booking under growing cache occupancy, it should stay flat
+ * since a booking only touches the blocks it overlaps
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReservationServiceBenchmark {
+
+  /**
+   * cached availability blocks
+   */
+  @Param({"10", "100", "1000"})
+  private int cacheOccupancy;
+
+  private ReservationService reservationService;
+  private LoadingCache<CacheKey,BlockAvailability> cache;
+  private long startDay;
+  private long endDay;
+  private List<CacheKey> bookedBlocks;
+
+  @Setup
+  public void setUp(){
+    SearchesCacheProducer producer = new SearchesCacheProducer();
+    ReflectionTestUtils.setField(producer,"occupancyIndex",new DayOccupancyIndex());
+    ReflectionTestUtils.setField(producer,"cacheProperties",new AvailabilityCacheProperties());
+    ReflectionTestUtils.setField(producer,"meterRegistry",new SimpleMeterRegistry());
+    cache = producer.buildCache();
+    long today = LocalDate.now().toEpochDay();
+    for(int i = 0; i < cacheOccupancy; i++){
+      cache.getUnchecked(CacheKey.ofDay(today + (long) i * CacheKey.BLOCK_DAYS));
+    }
+    reservationService = new ReservationService();
+    ReflectionTestUtils.setField(reservationService,"loadingCache",cache);
+
+    startDay = today + 2;
+    endDay = today + 4;
+    bookedBlocks = CacheKey.blocksBetween(startDay,endDay);
+  }
+
+  /**
+   * the invalidated blocks are put back so every invocation sees the same occupancy
+   */
+  @Benchmark
+  public void checkForDirtyValues(){
+    reservationService.checkForDirtyValues(startDay,endDay);
+    for(CacheKey key : bookedBlocks){
+      cache.put(key,new BlockAvailability(0L));
+    }
+  }
+}
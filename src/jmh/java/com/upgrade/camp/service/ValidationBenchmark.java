@@ -0,0 +1,62 @@
+package com.upgrade.camp.service;
+
+import com.upgrade.camp.model.Reservation;
+import com.upgrade.camp.service.calendar.StayCalendar;
+import com.upgrade.camp.service.validation.ReservationValidator;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+import static java.time.temporal.ChronoUnit.DAYS;
+
+/**
+ * run with {@code -prof gc} to compare the allocation rate of the validator against the previous checks
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ValidationBenchmark {
+
+  private ReservationValidator reservationValidator;
+  private Reservation reservation;
+
+  @Setup
+  public void setUp(){
+    StayCalendar stayCalendar = new StayCalendar();
+    ReflectionTestUtils.setField(stayCalendar,"clock",Clock.systemDefaultZone());
+    reservationValidator = new ReservationValidator();
+    ReflectionTestUtils.setField(reservationValidator,"stayCalendar",stayCalendar);
+    reservation = Reservation.builder()
+                             .email("someEmail@gmail.com")
+                             .fullName("NAME")
+                             .startDate(LocalDate.now().plusDays(2).atTime(12,0,1))
+                             .endDate(LocalDate.now().plusDays(4).atTime(12,0,0))
+                             .build();
+  }
+
+  @Benchmark
+  public void validate(){
+    reservationValidator.validate(reservation);
+  }
+
+  /**
+   * the checks as ReservationService did them before the validator, kept as baseline
+   */
+  @Benchmark
+  public void stringMatchesBaseline(Blackhole blackhole){
+    blackhole.consume(reservation.getEmail().matches("^(.+)@(.+)$"));
+    blackhole.consume(DAYS.between(reservation.getStartDate(),reservation.getEndDate()) > 3);
+    blackhole.consume(DAYS.between(LocalDateTime.now(),reservation.getStartDate()) > 30);
+    LocalDateTime today = LocalDateTime.now().withHour(12).withMinute(0).withSecond(1).withNano(0);
+    blackhole.consume(DAYS.between(today,reservation.getStartDate()) < 1);
+    blackhole.consume(reservation.getEndDate().isBefore(reservation.getStartDate()));
+  }
+}
@@ -1,27 +1,79 @@
 package com.upgrade.camp.aspect;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
 import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.EnableAspectJAutoProxy;
 import org.springframework.stereotype.Component;
 
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * records every {@link LogExecutionTime} method into a percentile histogram timer tagged by
+ * method and outcome (exposed through /actuator/prometheus); the log line is only written
+ * for a sample of the calls
+ */
 @Aspect
 @EnableAspectJAutoProxy
 @Component
 @Slf4j
 public class ExecutionTimeAspect {
 
+  public static final String TIMER_NAME = "camp.method.execution";
+  private static final String SUCCESS = "SUCCESS";
+  private static final String ERROR = "ERROR";
+  private static final String NONE = "none";
+
+  @Autowired
+  private MeterRegistry meterRegistry;
+  @Value("${camp.execution-time.log-sample-rate:0}")
+  private double logSampleRate;
+
+  private final ConcurrentMap<Method,Timer> successTimers = new ConcurrentHashMap<>();
+
   @Around("@annotation(LogExecutionTime)")
   public Object logExecutionTime(ProceedingJoinPoint joinPoint) throws Throwable{
-    long startTime = System.currentTimeMillis();
+    long startTime = System.nanoTime();
+    Throwable error = null;
     try{
       return joinPoint.proceed();
+    }catch (Throwable e){
+      error = e;
+      throw e;
     }finally {
-      String signature = joinPoint.getSignature().getDeclaringTypeName();
-      log.info("Method: {} executed in: {} milliseconds",signature,System.currentTimeMillis() - startTime);
+      long elapsed = System.nanoTime() - startTime;
+      Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+      Timer timer = error == null ? successTimers.computeIfAbsent(method,m -> timer(m,SUCCESS,NONE))
+                                  : timer(method,ERROR,error.getClass().getSimpleName());
+      timer.record(elapsed,TimeUnit.NANOSECONDS);
+      if(logSampleRate > 0 && ThreadLocalRandom.current().nextDouble() < logSampleRate){
+        log.info("Method: {} executed in: {} milliseconds",methodName(method),TimeUnit.NANOSECONDS.toMillis(elapsed));
+      }
     }
   }
 
+  private Timer timer(Method method, String outcome, String exception){
+    return Timer.builder(TIMER_NAME)
+                .description("Execution time of methods annotated with @LogExecutionTime")
+                .tag("method",methodName(method))
+                .tag("outcome",outcome)
+                .tag("exception",exception)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+  }
+
+  private static String methodName(Method method){
+    return method.getDeclaringClass().getSimpleName() + "." + method.getName();
+  }
+
 }
@@ -2,23 +2,27 @@ package com.upgrade.camp.controller;
 
 import com.upgrade.camp.aspect.LogExecutionTime;
 import com.upgrade.camp.controller.exception.BadRequestException;
+import com.upgrade.camp.controller.response.AvailabilityFormat;
 import com.upgrade.camp.controller.response.AvailableDaysResponse;
+import com.upgrade.camp.guava.AvailabilityResponseCache;
+import com.upgrade.camp.guava.AvailabilitySnapshot;
 import com.upgrade.camp.model.Reservation;
+import com.upgrade.camp.model.Stay;
 import com.upgrade.camp.controller.request.ReservationRequest;
 import com.upgrade.camp.controller.response.ReservationResponse;
 import com.upgrade.camp.service.ReservationService;
+import com.upgrade.camp.service.calendar.StayCalendar;
+import com.upgrade.camp.service.exception.StaleReservationException;
 import io.swagger.annotations.*;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.time.LocalDate;
-import java.time.LocalDateTime;
-import java.util.List;
-import java.util.UUID;
 
 @RestController
 @Api(value = "Booking Service", description = "Provides all operations related to a booking operation of the camp")
@@ -27,6 +31,10 @@ public class ReservationController {
 
   @Autowired
   private ReservationService reservationService;
+  @Autowired
+  private StayCalendar stayCalendar;
+  @Autowired
+  private AvailabilityResponseCache availabilityResponseCache;
 
   @ApiOperation(value = "Creates a Reservation", response = ReservationResponse.class)
   @ApiResponses(value = {
@@ -39,24 +47,34 @@ public class ReservationController {
     validate(reservationRequest);
     Reservation reservation = toReservation(reservationRequest);
     reservationService.createReservation(reservation);
-    return new ResponseEntity<>(new ReservationResponse(reservation,null,Boolean.FALSE), HttpStatus.CREATED);
+    return withETag(ResponseEntity.status(HttpStatus.CREATED),reservation).body(new ReservationResponse(reservation,null,Boolean.FALSE));
   }
 
-  @ApiOperation(value = "Check available days for booking", response = AvailableDaysResponse.class)
+  @ApiOperation(value = "Check available days for booking", response = AvailableDaysResponse.class,
+                produces = "application/json," + AvailabilityFormat.BITMASK_VALUE + "," + AvailabilityFormat.RANGES_VALUE)
   @ApiResponses(value = {
           @ApiResponse(code = 200, message = "Ok"),
+          @ApiResponse(code = 304, message = "Not Modified"),
+          @ApiResponse(code = 400, message = "Unknown format")
   })
   @GetMapping("/availability")
   @LogExecutionTime
-  public ResponseEntity<AvailableDaysResponse> checkAvailability
+  public ResponseEntity<byte[]> checkAvailability
           (@ApiParam(value = "start date of filter")@RequestParam(name = "startDate", required = false)
            @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate startDate,
            @ApiParam(value = "end date of filter")@RequestParam(name = "endDate", required = false)
-           @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate endDate){
-    LocalDateTime start = startDate == null ? getLocalDateTimeWith(12,0,0,0) : startDate.atTime(12,0, 0);
-    LocalDateTime end = endDate == null ? start.plusMonths(1): endDate.atTime(12,0, 0);
-    List<LocalDateTime> availableDays = reservationService.findAvailability(start.plusDays(1),end.plusDays(1));
-    return new ResponseEntity<>(new AvailableDaysResponse(availableDays,null,Boolean.FALSE), HttpStatus.OK);
+           @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate endDate,
+           @ApiParam(value = "dates, bitmask or ranges, overrides the Accept header")@RequestParam(name = "format", required = false) String format,
+           @RequestHeader(name = HttpHeaders.ACCEPT, required = false) String accept,
+           @RequestHeader(name = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch){
+    AvailabilityFormat availabilityFormat = AvailabilityFormat.resolve(format,accept);
+    AvailabilitySnapshot snapshot = reservationService.findAvailability(stayCalendar.availabilityWindow(startDate,endDate));
+    String eTag = AvailabilityResponseCache.eTagOf(snapshot,availabilityFormat);
+    if(matchesAny(ifNoneMatch,eTag)){
+      return ResponseEntity.status(HttpStatus.NOT_MODIFIED).varyBy(HttpHeaders.ACCEPT).eTag(eTag).build();
+    }
+    byte[] body = availabilityResponseCache.get(eTag,snapshot,availabilityFormat);
+    return ResponseEntity.ok().contentType(availabilityFormat.getMediaType()).varyBy(HttpHeaders.ACCEPT).eTag(eTag).body(body);
   }
 
   @ApiOperation(value = "Obtains a Reservation", response = ReservationResponse.class)
@@ -68,22 +86,24 @@ public class ReservationController {
   @LogExecutionTime
   public ResponseEntity<ReservationResponse> findById(@ApiParam(value = "Booking ID") @PathVariable(name = "id") String id){
     Reservation reservation = reservationService.findById(id);
-    return new ResponseEntity<>(new ReservationResponse(reservation,null,Boolean.FALSE),HttpStatus.OK);
+    return withETag(ResponseEntity.ok(),reservation).body(new ReservationResponse(reservation,null,Boolean.FALSE));
   }
 
   @ApiOperation(value = "Update a Reservation", response = ReservationResponse.class)
   @ApiResponses(value = {
     @ApiResponse(code = 200, message = "OK"),
     @ApiResponse(code = 204, message = "Not Found"),
-    @ApiResponse(code = 400, message = "Bad Request")
+    @ApiResponse(code = 400, message = "Bad Request"),
+    @ApiResponse(code = 412, message = "Modified since the If-Match ETag was read")
   })
   @PutMapping("/{id}")
   @LogExecutionTime
   public ResponseEntity<ReservationResponse> updateReservation(@RequestBody ReservationRequest request,
-       @ApiParam(value = "Booking ID") @PathVariable(name = "id") String id){
+       @ApiParam(value = "Booking ID") @PathVariable(name = "id") String id,
+       @ApiParam(value = "ETag of the reservation as read") @RequestHeader(name = HttpHeaders.IF_MATCH, required = false) String ifMatch){
     validate(request);
-    Reservation reservation = reservationService.updateReservation(request,id);
-    return new ResponseEntity<>(new ReservationResponse(reservation,null,Boolean.FALSE),HttpStatus.OK);
+    Reservation reservation = reservationService.updateReservation(request,id,versionOf(ifMatch));
+    return withETag(ResponseEntity.ok(),reservation).body(new ReservationResponse(reservation,null,Boolean.FALSE));
   }
 
   @ApiOperation(value = "Deletes a Reservation")
@@ -99,6 +119,44 @@ public class ReservationController {
     reservationService.deleteReservation(id,email);
   }
 
+  /**
+   * If-None-Match holds *, or a list of tags that may be weak
+   */
+  private static boolean matchesAny(String ifNoneMatch, String eTag){
+    if(ifNoneMatch == null){
+      return false;
+    }
+    for(String candidate : StringUtils.split(ifNoneMatch,',')){
+      String tag = StringUtils.removeStart(candidate.trim(),"W/");
+      if(tag.equals("*") || tag.equals(eTag)){
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * a reservation's ETag is its quoted version
+   */
+  private static ResponseEntity.BodyBuilder withETag(ResponseEntity.BodyBuilder builder, Reservation reservation){
+    return reservation.getVersion() == null ? builder : builder.eTag("\"" + reservation.getVersion() + "\"");
+  }
+
+  /**
+   * the version an If-Match asks for, null when absent or *. If-Match compares strongly, so a weak tag,
+   * a list or anything else that is not a reservation ETag can never match
+   */
+  private static Long versionOf(String ifMatch){
+    if(ifMatch == null || ifMatch.trim().equals("*")){
+      return null;
+    }
+    String version = StringUtils.removeEnd(StringUtils.removeStart(ifMatch.trim(),"\""),"\"");
+    if(!StringUtils.isNumeric(version) || version.length() > 18){
+      throw new StaleReservationException("Reservation was modified since it was read");
+    }
+    return Long.valueOf(version);
+  }
+
   private void validate(ReservationRequest reservationRequest){
     if(StringUtils.isBlank(reservationRequest.getEmail()) || StringUtils.isBlank(reservationRequest.getFullName()) ||
        reservationRequest.getStartDate() == null || reservationRequest.getEndDate() == null){
@@ -106,26 +164,18 @@ public class ReservationController {
     }
   }
 
+  /**
+   * uid and booking date are set by the service
+   */
   private Reservation toReservation(ReservationRequest reservationRequest){
-    LocalDateTime startDate = getLocalDateTimeWith(reservationRequest.getStartDate(),12,0,1,0);
-    LocalDateTime endDate = getLocalDateTimeWith(reservationRequest.getEndDate(),12,0,0,0);
+    Stay stay = Stay.between(reservationRequest.getStartDate(),reservationRequest.getEndDate());
     return Reservation.builder()
-                      .bookingDate(LocalDateTime.now())
-                      .startDate(startDate)
-                      .endDate(endDate)
+                      .startDate(stay.checkIn())
+                      .endDate(stay.checkOut())
                       .email(reservationRequest.getEmail())
-                      .uid(UUID.randomUUID().toString())
                       .fullName(reservationRequest.getFullName())
                       .build();
 
   }
 
-  private LocalDateTime getLocalDateTimeWith(Integer hour,Integer min,Integer seconds,Integer nano){
-    return LocalDateTime.now().withHour(hour).withMinute(min).withSecond(seconds).withNano(nano);
-  }
-
-  private LocalDateTime getLocalDateTimeWith(LocalDateTime target,Integer hour,Integer min,Integer seconds,Integer nano){
-    return target.withHour(hour).withMinute(min).withSecond(seconds).withNano(nano);
-  }
-
 }
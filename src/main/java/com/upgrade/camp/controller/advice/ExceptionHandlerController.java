@@ -5,6 +5,7 @@ import com.upgrade.camp.controller.response.ReservationResponse;
 import com.upgrade.camp.service.exception.AlreadyBookedException;
 import com.upgrade.camp.service.exception.ModelConstraintReservation;
 import com.upgrade.camp.service.exception.ReservationNotFoundException;
+import com.upgrade.camp.service.exception.StaleReservationException;
 import org.hibernate.exception.ConstraintViolationException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -27,6 +28,12 @@ public class ExceptionHandlerController extends ResponseEntityExceptionHandler{
     return new ResponseEntity<>(response, HttpStatus.NOT_FOUND);
   }
 
+  @ExceptionHandler({StaleReservationException.class})
+  public ResponseEntity<ReservationResponse> handleStaleReservationError(Exception e){
+    ReservationResponse response = createReservationResponse(e.getMessage());
+    return new ResponseEntity<>(response, HttpStatus.PRECONDITION_FAILED);
+  }
+
   @ExceptionHandler({ConstraintViolationException.class})
   public ResponseEntity<ReservationResponse> handleConstraintViolationError(Exception e){
     ReservationResponse response = createReservationResponse("Cannot book, due conflicts with other reservations");
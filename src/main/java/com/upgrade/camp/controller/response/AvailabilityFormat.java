@@ -0,0 +1,72 @@
+package com.upgrade.camp.controller.response;
+
+import com.upgrade.camp.controller.exception.BadRequestException;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+
+/**
+ * How free days are written back. A {@code format} query parameter wins over the {@code Accept} header,
+ * when neither asks for a compact format the list of dates is kept.
+ */
+public enum AvailabilityFormat {
+
+  /**
+   * one "yyyy-MM-dd HH:mm:ss" date-time per free night
+   */
+  DATES(MediaType.APPLICATION_JSON_UTF8),
+  /**
+   * start date plus one '1' (free) or '0' (booked) character per night of the window
+   */
+  BITMASK(MediaType.valueOf(AvailabilityFormat.BITMASK_VALUE)),
+  /**
+   * start date plus the free runs of the window as [offset, nights] pairs
+   */
+  RANGES(MediaType.valueOf(AvailabilityFormat.RANGES_VALUE));
+
+  public static final String BITMASK_VALUE = "application/vnd.camp.availability.bitmask+json";
+  public static final String RANGES_VALUE = "application/vnd.camp.availability.ranges+json";
+
+  private final MediaType mediaType;
+
+  AvailabilityFormat(MediaType mediaType){
+    this.mediaType = mediaType;
+  }
+
+  public MediaType getMediaType(){
+    return mediaType;
+  }
+
+  public static AvailabilityFormat resolve(String format, String accept){
+    if(format != null){
+      return fromParameter(format);
+    }
+    return accept == null ? DATES : fromAccept(accept);
+  }
+
+  private static AvailabilityFormat fromParameter(String format){
+    for(AvailabilityFormat availabilityFormat : values()){
+      if(availabilityFormat.name().equalsIgnoreCase(format)){
+        return availabilityFormat;
+      }
+    }
+    throw new BadRequestException("Unknown availability format " + format);
+  }
+
+  /**
+   * wildcards never select a compact format, only the vendor types do
+   */
+  private static AvailabilityFormat fromAccept(String accept){
+    try{
+      for(MediaType mediaType : MediaType.parseMediaTypes(accept)){
+        for(AvailabilityFormat availabilityFormat : values()){
+          if(availabilityFormat != DATES && availabilityFormat.mediaType.equalsTypeAndSubtype(mediaType)){
+            return availabilityFormat;
+          }
+        }
+      }
+    }catch (InvalidMediaTypeException e){
+      return DATES;
+    }
+    return DATES;
+  }
+}
@@ -0,0 +1,22 @@
+package com.upgrade.camp.controller.response;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.upgrade.camp.model.FreeDays;
+import lombok.Getter;
+
+/**
+ * availability in one of the compact formats, written by {@link CompactAvailabilitySerializer}
+ */
+@Getter
+@JsonSerialize(using = CompactAvailabilitySerializer.class)
+public class CompactAvailabilityResponse extends BasicResponse {
+
+  private final FreeDays response;
+  private final AvailabilityFormat format;
+
+  public CompactAvailabilityResponse(FreeDays freeDays, AvailabilityFormat format, String msg, Boolean error){
+    super(msg,error);
+    this.response = freeDays;
+    this.format = format;
+  }
+}
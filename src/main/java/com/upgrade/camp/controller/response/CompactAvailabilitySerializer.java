@@ -0,0 +1,92 @@
+package com.upgrade.camp.controller.response;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import com.upgrade.camp.model.FreeDays;
+
+import java.io.IOException;
+import java.time.LocalDate;
+
+/**
+ * Writes the free days straight to the generator, no date object or formatter per night:
+ * <pre>
+ * bitmask: {"message":null,"error":false,"response":{"start":"2019-11-21","days":5,"free":"11001"}}
+ * ranges:  {"message":null,"error":false,"response":{"start":"2019-11-21","days":5,"free":[[0,2],[4,1]]}}
+ * </pre>
+ */
+public class CompactAvailabilitySerializer extends StdSerializer<CompactAvailabilityResponse> {
+
+  private static final SerializedString MESSAGE = new SerializedString("message");
+  private static final SerializedString ERROR = new SerializedString("error");
+  private static final SerializedString RESPONSE = new SerializedString("response");
+  private static final SerializedString START = new SerializedString("start");
+  private static final SerializedString DAYS = new SerializedString("days");
+  private static final SerializedString FREE = new SerializedString("free");
+
+  public CompactAvailabilitySerializer(){
+    super(CompactAvailabilityResponse.class);
+  }
+
+  @Override
+  public void serialize(CompactAvailabilityResponse value, JsonGenerator gen, SerializerProvider provider) throws IOException {
+    gen.writeStartObject();
+    gen.writeFieldName(MESSAGE);
+    if(value.getMessage() == null){
+      gen.writeNull();
+    }else{
+      gen.writeString(value.getMessage());
+    }
+    gen.writeFieldName(ERROR);
+    if(value.getError() == null){
+      gen.writeNull();
+    }else{
+      gen.writeBoolean(value.getError());
+    }
+    gen.writeFieldName(RESPONSE);
+    FreeDays freeDays = value.getResponse();
+    if(freeDays == null){
+      gen.writeNull();
+    }else{
+      writeFreeDays(freeDays,value.getFormat(),gen);
+    }
+    gen.writeEndObject();
+  }
+
+  private static void writeFreeDays(FreeDays freeDays, AvailabilityFormat format, JsonGenerator gen) throws IOException {
+    gen.writeStartObject();
+    gen.writeFieldName(START);
+    gen.writeString(LocalDate.ofEpochDay(freeDays.getWindow().getStartDay()).toString());
+    gen.writeFieldName(DAYS);
+    gen.writeNumber(freeDays.length());
+    gen.writeFieldName(FREE);
+    if(format == AvailabilityFormat.RANGES){
+      writeRanges(freeDays,gen);
+    }else{
+      writeBitmask(freeDays,gen);
+    }
+    gen.writeEndObject();
+  }
+
+  private static void writeBitmask(FreeDays freeDays, JsonGenerator gen) throws IOException {
+    char[] bits = new char[freeDays.length()];
+    for(int offset = 0; offset < bits.length; offset++){
+      bits[offset] = freeDays.isFree(offset) ? '1' : '0';
+    }
+    gen.writeString(bits,0,bits.length);
+  }
+
+  private static void writeRanges(FreeDays freeDays, JsonGenerator gen) throws IOException {
+    gen.writeStartArray();
+    for(int start = freeDays.nextFree(0); start >= 0; ){
+      int end = freeDays.nextBooked(start);
+      gen.writeStartArray();
+      gen.writeNumber(start);
+      gen.writeNumber(end - start);
+      gen.writeEndArray();
+      start = freeDays.nextFree(end);
+    }
+    gen.writeEndArray();
+  }
+}
@@ -0,0 +1,28 @@
+package com.upgrade.camp.datasource;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Read only transactions go to the replica unless {@link ReadYourWrites} pinned them to the primary,
+ * everything else goes to the primary. The transaction is only known once it has begun, so this must sit
+ * behind a LazyConnectionDataSourceProxy that asks for the connection at the first statement.
+ */
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+
+  public enum Route {
+    PRIMARY, REPLICA
+  }
+
+  @Override
+  protected Object determineCurrentLookupKey(){
+    return route();
+  }
+
+  static Route route(){
+    if(TransactionSynchronizationManager.isCurrentTransactionReadOnly() && !ReadYourWrites.isPinnedToPrimary()){
+      return Route.REPLICA;
+    }
+    return Route.PRIMARY;
+  }
+}
@@ -0,0 +1,95 @@
+package com.upgrade.camp.datasource;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * The replica may trail the primary by up to camp.datasource.replica.max-lag. Reads of a reservation written
+ * within that lag are pinned to the primary so a guest always reads back the booking just made; older data is
+ * read from the replica. A reservation written through another instance is not known here, so a lookup
+ * the replica misses is retried on the primary. Reads that must never trail, whatever was written, run
+ * {@link #onPrimary}.
+ */
+@Component
+public class ReadYourWrites {
+
+  private static final ThreadLocal<Boolean> PINNED_TO_PRIMARY = ThreadLocal.withInitial(() -> Boolean.FALSE);
+
+  @Autowired
+  private ReplicaDataSourceProperties replicaProperties;
+  @Autowired
+  private PlatformTransactionManager transactionManager;
+
+  private Cache<String,Boolean> recentWrites;
+
+  @PostConstruct
+  public void buildCache(){
+    recentWrites = CacheBuilder.newBuilder()
+            .maximumSize(replicaProperties.getRecentWritesMaximumSize())
+            .expireAfterWrite(replicaProperties.getMaxLag().toNanos(),TimeUnit.NANOSECONDS)
+            .build();
+  }
+
+  /**
+   * to be called once the transaction writing the reservation has committed
+   */
+  public void wrote(String reservationUid){
+    recentWrites.put(reservationUid,Boolean.TRUE);
+  }
+
+  /**
+   * runs a read of one reservation, on the primary when it was written within the lag
+   */
+  public <T> T read(String reservationUid, Supplier<T> read){
+    return readPinnedIf(recentWrites.getIfPresent(reservationUid) != null,read);
+  }
+
+  /**
+   * runs again on the primary a lookup the replica found nothing for: the reservation may have been written
+   * through another instance and not be replicated yet. The current transaction may already hold a replica
+   * connection, so the retry gets a transaction of its own. Without a replica the miss was read from the
+   * primary already and stands
+   */
+  public <T> Optional<T> readMissOnPrimary(Supplier<Optional<T>> read){
+    if(replicaProperties.getUrl() == null){
+      return Optional.empty();
+    }
+    TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+    transaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    transaction.setReadOnly(true);
+    return onPrimary(() -> transaction.execute(status -> read.get()));
+  }
+
+  /**
+   * runs a read on the primary, read only transactions included
+   */
+  public <T> T onPrimary(Supplier<T> read){
+    return readPinnedIf(true,read);
+  }
+
+  public static boolean isPinnedToPrimary(){
+    return PINNED_TO_PRIMARY.get();
+  }
+
+  private static <T> T readPinnedIf(boolean pin, Supplier<T> read){
+    if(!pin || isPinnedToPrimary()){
+      return read.get();
+    }
+    PINNED_TO_PRIMARY.set(Boolean.TRUE);
+    try{
+      return read.get();
+    }finally {
+      PINNED_TO_PRIMARY.remove();
+    }
+  }
+}
@@ -0,0 +1,31 @@
+package com.upgrade.camp.datasource;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * read replica, bound from camp.datasource.replica.*; its pool is sized apart under camp.datasource.replica.hikari.*
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "camp.datasource.replica")
+public class ReplicaDataSourceProperties {
+
+  /**
+   * every transaction stays on the primary when not set
+   */
+  private String url;
+  private String username;
+  private String password;
+  /**
+   * how far the replica may trail the primary; what was written within it is read back from the primary
+   */
+  private Duration maxLag = Duration.ofSeconds(2);
+  /**
+   * reservations remembered as written within the lag
+   */
+  private long recentWritesMaximumSize = 10_000L;
+}
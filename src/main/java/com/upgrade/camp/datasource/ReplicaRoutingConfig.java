@@ -0,0 +1,66 @@
+package com.upgrade.camp.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Only when camp.datasource.replica.url is set: the primary keeps the spring.datasource pool and the replica
+ * gets a pool of its own, so a burst of reads can never take the connections bookings need.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "camp.datasource.replica", name = "url")
+public class ReplicaRoutingConfig {
+
+  @Bean
+  @ConfigurationProperties(prefix = "spring.datasource.hikari")
+  public HikariDataSource primaryDataSource(DataSourceProperties dataSourceProperties){
+    return dataSourceProperties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+  }
+
+  @Bean
+  @ConfigurationProperties(prefix = "camp.datasource.replica.hikari")
+  public HikariDataSource replicaDataSource(ReplicaDataSourceProperties replicaProperties){
+    return DataSourceBuilder.create()
+            .type(HikariDataSource.class)
+            .url(replicaProperties.getUrl())
+            .username(replicaProperties.getUsername())
+            .password(replicaProperties.getPassword())
+            .build();
+  }
+
+  /**
+   * the pools are injected lazily and the connection defaults given up front, so nothing connects while
+   * this bean is created: any DataSource bean coming up runs the schema initializer on this one
+   */
+  @Bean
+  @Primary
+  public DataSource dataSource(@Lazy @Qualifier("primaryDataSource") DataSource primaryDataSource,
+                               @Lazy @Qualifier("replicaDataSource") DataSource replicaDataSource){
+    Map<Object,Object> targets = new HashMap<>();
+    targets.put(ReadWriteRoutingDataSource.Route.PRIMARY,primaryDataSource);
+    targets.put(ReadWriteRoutingDataSource.Route.REPLICA,replicaDataSource);
+    ReadWriteRoutingDataSource routingDataSource = new ReadWriteRoutingDataSource();
+    routingDataSource.setTargetDataSources(targets);
+    routingDataSource.setDefaultTargetDataSource(primaryDataSource);
+    routingDataSource.afterPropertiesSet();
+    LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy();
+    dataSource.setTargetDataSource(routingDataSource);
+    dataSource.setDefaultAutoCommit(true);
+    dataSource.setDefaultTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
+    return dataSource;
+  }
+}
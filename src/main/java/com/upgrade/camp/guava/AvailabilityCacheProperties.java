@@ -0,0 +1,27 @@
+package com.upgrade.camp.guava;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * sizing and expiry of the availability cache, bound from camp.cache.availability.*
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "camp.cache.availability")
+public class AvailabilityCacheProperties {
+
+  private long maximumSize = 1000L;
+  private Duration expireAfterAccess = Duration.ofSeconds(120);
+  /**
+   * disabled when not set; entries past it are reloaded by the next read
+   */
+  private Duration refreshAfterWrite;
+  /**
+   * serialized availability responses kept, one per window, format and version
+   */
+  private long responseMaximumSize = 1000L;
+}
@@ -0,0 +1,73 @@
+package com.upgrade.camp.guava;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.upgrade.camp.controller.response.AvailabilityFormat;
+import com.upgrade.camp.controller.response.AvailableDaysResponse;
+import com.upgrade.camp.controller.response.CompactAvailabilityResponse;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.io.UncheckedIOException;
+
+/**
+ * Availability responses already serialized, keyed by their ETag. The tag names the window, the format
+ * and a hash of the free days read, so a cached body never needs invalidating: a booking changes the
+ * free days and with them the key, the old body simply ages out.
+ */
+@Component
+public class AvailabilityResponseCache {
+
+  public static final String AVAILABILITY_RESPONSE_CACHE = "availability-response";
+
+  @Autowired
+  private ObjectMapper objectMapper;
+  @Autowired
+  private AvailabilityCacheProperties cacheProperties;
+  @Autowired
+  private MeterRegistry meterRegistry;
+
+  private Cache<String,byte[]> responses;
+
+  @PostConstruct
+  public void buildCache(){
+    Cache<String,byte[]> cache = CacheBuilder.newBuilder()
+            .maximumSize(cacheProperties.getResponseMaximumSize())
+            .recordStats()
+            .build();
+    responses = GuavaCacheMetrics.monitor(meterRegistry,cache,AVAILABILITY_RESPONSE_CACHE);
+  }
+
+  public static String eTagOf(AvailabilitySnapshot snapshot, AvailabilityFormat format){
+    return "\"" + format.name().toLowerCase() + "-" + snapshot.getWindow().getStartDay() + "-" +
+           snapshot.getWindow().getEndDay() + "-" + snapshot.contentHash() + "\"";
+  }
+
+  /**
+   * the body for {@link #eTagOf} of the snapshot; two readers missing at once both serialize, the last one stays
+   */
+  public byte[] get(String eTag, AvailabilitySnapshot snapshot, AvailabilityFormat format){
+    byte[] body = responses.getIfPresent(eTag);
+    if(body == null){
+      body = serialize(snapshot,format);
+      responses.put(eTag,body);
+    }
+    return body;
+  }
+
+  private byte[] serialize(AvailabilitySnapshot snapshot, AvailabilityFormat format){
+    Object response = format == AvailabilityFormat.DATES
+            ? new AvailableDaysResponse(snapshot.dates(),null,Boolean.FALSE)
+            : new CompactAvailabilityResponse(snapshot.freeDays(),format,null,Boolean.FALSE);
+    try{
+      return objectMapper.writeValueAsBytes(response);
+    }catch (JsonProcessingException e){
+      throw new UncheckedIOException(e);
+    }
+  }
+}
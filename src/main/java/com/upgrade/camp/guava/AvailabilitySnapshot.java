@@ -0,0 +1,65 @@
+package com.upgrade.camp.guava;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.upgrade.camp.model.FreeDays;
+import com.upgrade.camp.model.Stay;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The cached blocks an availability window was read from. Everything derived from a snapshot,
+ * free days, dates or content hash, comes from the same block values even if a booking lands meanwhile.
+ */
+public class AvailabilitySnapshot {
+
+  private final Stay window;
+  private final List<CacheKey> keys;
+  private final List<BlockAvailability> blocks;
+
+  public AvailabilitySnapshot(Stay window, List<CacheKey> keys, List<BlockAvailability> blocks){
+    this.window = window;
+    this.keys = keys;
+    this.blocks = blocks;
+  }
+
+  public Stay getWindow(){
+    return window;
+  }
+
+  /**
+   * hash of the window and of its free days, the same on every node and across restarts for the same content
+   */
+  public String contentHash(){
+    long startDay = window.getStartDay();
+    long endDay = window.getEndDay();
+    Hasher hasher = Hashing.murmur3_128().newHasher().putLong(startDay).putLong(endDay);
+    for(int i = 0; i < keys.size(); i++){
+      hasher.putLong(blocks.get(i).getFreeMask() & keys.get(i).maskOf(startDay,endDay));
+    }
+    return hasher.hash().toString();
+  }
+
+  public FreeDays freeDays(){
+    long startDay = window.getStartDay();
+    long endDay = window.getEndDay();
+    FreeDays freeDays = new FreeDays(window);
+    for(int i = 0; i < keys.size(); i++){
+      CacheKey key = keys.get(i);
+      long free = blocks.get(i).getFreeMask() & key.maskOf(startDay,endDay);
+      while(free != 0){
+        freeDays.markFree(key.getStartDay() + Long.numberOfTrailingZeros(free));
+        free &= free - 1;
+      }
+    }
+    return freeDays;
+  }
+
+  public List<LocalDateTime> dates(){
+    List<LocalDateTime> dates = new ArrayList<>();
+    freeDays().forEachFreeDay(day -> dates.add(Stay.checkInOf(day)));
+    return dates;
+  }
+}
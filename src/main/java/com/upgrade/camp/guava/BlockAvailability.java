@@ -0,0 +1,12 @@
+package com.upgrade.camp.guava;
+
+import lombok.Value;
+
+/**
+ * Cached availability of a block: its free day mask, bit i standing for {@code key.getStartDay() + i}.
+ */
+@Value
+public class BlockAvailability {
+
+  long freeMask;
+}
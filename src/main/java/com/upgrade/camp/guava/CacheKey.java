@@ -1,14 +1,59 @@
 package com.upgrade.camp.guava;
 
-import lombok.Builder;
 import lombok.Data;
 
-import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
+/**
+ * Availability is cached per fixed block of calendar days aligned on the epoch,
+ * so every window sharing a block shares its entry no matter where the window starts.
+ */
 @Data
-@Builder
 public class CacheKey {
 
-  private LocalDateTime startDate;
-  private LocalDateTime endDate;
+  public static final int BLOCK_DAYS = 32;
+  private static final long ALL_ONES = -1L;
+
+  private final long block;
+
+  public static CacheKey ofDay(long epochDay){
+    return new CacheKey(Math.floorDiv(epochDay,BLOCK_DAYS));
+  }
+
+  /**
+   * @return in calendar order, the keys of every block sharing a day with [startDay, endDay)
+   */
+  public static List<CacheKey> blocksBetween(long startDay, long endDay){
+    if(endDay <= startDay){
+      return Collections.emptyList();
+    }
+    long lastBlock = Math.floorDiv(endDay - 1,BLOCK_DAYS);
+    List<CacheKey> keys = new ArrayList<>();
+    for(long block = Math.floorDiv(startDay,BLOCK_DAYS); block <= lastBlock; block++){
+      keys.add(new CacheKey(block));
+    }
+    return keys;
+  }
+
+  public long getStartDay(){
+    return block * BLOCK_DAYS;
+  }
+
+  public long getEndDay(){
+    return getStartDay() + BLOCK_DAYS;
+  }
+
+  /**
+   * bits of the block days lying in [startDay, endDay), bit i standing for {@code getStartDay() + i}
+   */
+  public long maskOf(long startDay, long endDay){
+    long from = Math.max(startDay,getStartDay()) - getStartDay();
+    long to = Math.min(endDay,getEndDay()) - getStartDay();
+    if(to <= from){
+      return 0L;
+    }
+    return (ALL_ONES >>> (Long.SIZE - (to - from))) << from;
+  }
 }
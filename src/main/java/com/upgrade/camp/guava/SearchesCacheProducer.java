@@ -1,66 +1,58 @@
 package com.upgrade.camp.guava;
 
-import com.upgrade.camp.model.Reservation;
-import com.upgrade.camp.repository.ReservationRepository;
+import com.upgrade.camp.service.occupancy.DayOccupancyIndex;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.Configuration;
 
-import java.time.LocalDateTime;
-import java.util.ArrayList;
-import java.util.List;
 import java.util.concurrent.TimeUnit;
-import java.util.stream.Collectors;
-import java.util.stream.IntStream;
-
-import static java.time.temporal.ChronoUnit.DAYS;
 
 @Configuration
 @ComponentScan(value = "com.upgrade.camp")
 public class SearchesCacheProducer {
 
+  public static final String AVAILABILITY_CACHE = "availability";
+
+  @Autowired
+  private DayOccupancyIndex occupancyIndex;
+  @Autowired
+  private AvailabilityCacheProperties cacheProperties;
   @Autowired
-  private ReservationRepository reservationRepository;
+  private MeterRegistry meterRegistry;
 
+  /**
+   * each entry is the free day mask of a block; bookings invalidate the blocks they touch.
+   * hit, miss, load and eviction statistics are exported as cache.* metrics tagged cache=availability
+   */
   @Bean
-  public LoadingCache<CacheKey,List<LocalDateTime>> buildCache(){
-    return CacheBuilder.newBuilder()
-            .maximumSize(1000l)
-            .expireAfterAccess(120, TimeUnit.SECONDS)
-            .build(CacheLoader.from(key -> findAvailability(key.getStartDate(),key.getEndDate())));
-  }
-
-  private List<LocalDateTime> findAvailability(LocalDateTime startDate, LocalDateTime endDate){
-    List<Reservation> reservations = reservationRepository.getAllReservationBetween(startDate,endDate);
-    if(reservations.isEmpty()){
-      return getAllDatesBetween(startDate,endDate);
+  public LoadingCache<CacheKey,BlockAvailability> buildCache(){
+    CacheBuilder<Object,Object> builder = CacheBuilder.newBuilder()
+            .maximumSize(cacheProperties.getMaximumSize())
+            .expireAfterAccess(cacheProperties.getExpireAfterAccess().toMillis(), TimeUnit.MILLISECONDS)
+            .recordStats();
+    if(cacheProperties.getRefreshAfterWrite() != null){
+      builder.refreshAfterWrite(cacheProperties.getRefreshAfterWrite().toMillis(), TimeUnit.MILLISECONDS);
     }
-    return obtainAvailabilityBetween(startDate,endDate,reservations);
+    LoadingCache<CacheKey,BlockAvailability> cache = builder.build(new BlockLoader());
+    return GuavaCacheMetrics.monitor(meterRegistry,cache,AVAILABILITY_CACHE);
   }
 
-  private List<LocalDateTime> getAllDatesBetween(LocalDateTime startDate,LocalDateTime endDate){
-    List<LocalDateTime> dates = new ArrayList<>();
-    IntStream.range(0,(int)DAYS.between(startDate.withSecond(0),endDate.withSecond(0)))
-            .forEach( (i) -> {
-              LocalDateTime date = startDate.plusDays(i).withHour(12).withMinute(0).withSecond(0).withNano(0);
-              dates.add(date);
-            });
-    return dates;
-  }
+  /**
+   * a load is a few word reads of the occupancy index, so refreshes run inline on the reading thread:
+   * a background refresh would save nothing and could store a block computed before an invalidation
+   */
+  private class BlockLoader extends CacheLoader<CacheKey,BlockAvailability> {
 
-  private List<LocalDateTime> obtainAvailabilityBetween(LocalDateTime startDate, LocalDateTime endDate,List<Reservation> reservations){
-    List<LocalDateTime> bookedDates = reservations.stream()
-            .map(reservation -> getAllDatesBetween(reservation.getStartDate(),reservation.getEndDate()))
-            .flatMap(List::stream)
-            .collect(Collectors.toList());
-    List<LocalDateTime> dates = getAllDatesBetween(startDate,endDate);
-    return dates.stream()
-            .filter(e -> !bookedDates.contains(e))
-            .collect(Collectors.toList());
+    @Override
+    public BlockAvailability load(CacheKey key){
+      return new BlockAvailability(occupancyIndex.freeMask(key.getStartDay(),key.getEndDay()));
+    }
   }
 
 }
@@ -0,0 +1,183 @@
+package com.upgrade.camp.mappers;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.Uninterruptibles;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import static com.upgrade.camp.mappers.StreamingObjectTransformer.NEW_LINE;
+import static com.upgrade.camp.mappers.StreamingObjectTransformer.OBJECT_MAPPER;
+import static com.upgrade.camp.mappers.StreamingObjectTransformer.readNeededProperties;
+
+/**
+ * transforms many documents in parallel sharing the compiled maps of an {@link ObjectTransformer}.
+ * Results are handed over in the order of the sources and at most {@code maxInFlight} documents are
+ * transformed or waiting to be consumed at any time: the next source is only pulled once the oldest
+ * result was consumed, so a slow consumer slows the producer down instead of filling the heap
+ */
+@Slf4j
+public class BatchObjectTransformer {
+
+    private static final int IN_FLIGHT_PER_THREAD = 4;
+
+    private final ObjectTransformer objectTransformer;
+    private final Executor executor;
+    private final int maxInFlight;
+
+    /**
+     * runs on the common fork join pool
+     */
+    public BatchObjectTransformer(ObjectTransformer objectTransformer) {
+        this(objectTransformer, ForkJoinPool.commonPool(), ForkJoinPool.getCommonPoolParallelism() * IN_FLIGHT_PER_THREAD);
+    }
+
+    public BatchObjectTransformer(ObjectTransformer objectTransformer, Executor executor, int maxInFlight) {
+        Preconditions.checkArgument(maxInFlight > 0, "maxInFlight must be positive");
+        this.objectTransformer = objectTransformer;
+        this.executor = executor;
+        this.maxInFlight = maxInFlight;
+    }
+
+    public List<JsonNode> transformAll(String objectApiName, Collection<? extends JsonNode> sources) {
+        List<JsonNode> targets = new ArrayList<>(sources.size());
+        transformEach(objectApiName, sources.iterator(), targets::add);
+        return targets;
+    }
+
+    /**
+     * the stream is consumed lazily, never more than {@code maxInFlight} documents ahead of the consumer
+     */
+    public void transformEach(String objectApiName, Stream<? extends JsonNode> sources, Consumer<? super JsonNode> target) {
+        transformEach(objectApiName, sources.iterator(), target);
+    }
+
+    /**
+     * parses a newline delimited JSON stream on the calling thread, transforms the records in parallel and
+     * writes them back in the same order, neither stream is closed
+     * @return quantity of records transformed
+     */
+    public long transformEachIntoFormat(String objectApiName, InputStream source, OutputStream target) throws IOException {
+        TransformationPlan plan = objectTransformer.planFor(objectApiName);
+        long[] records = {0};
+        try (JsonParser parser = OBJECT_MAPPER.getFactory().createParser(source);
+             JsonGenerator generator = OBJECT_MAPPER.getFactory().createGenerator(target)) {
+            generator.setRootValueSeparator(NEW_LINE);
+            transformEach(plan, new RecordIterator(plan, parser), transformed -> {
+                write(generator, transformed);
+                records[0]++;
+            });
+            if (records[0] > 0) {
+                generator.writeRaw(NEW_LINE.getValue());
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        log.debug("message=\"Batch transformation for {} ended\", records={}", objectApiName, records[0]);
+        return records[0];
+    }
+
+    private void transformEach(String objectApiName, Iterator<? extends JsonNode> sources, Consumer<? super JsonNode> target) {
+        transformEach(objectTransformer.planFor(objectApiName), sources, target);
+    }
+
+    private void transformEach(TransformationPlan plan, Iterator<? extends JsonNode> sources, Consumer<? super JsonNode> target) {
+        Deque<Future<JsonNode>> inFlight = new ArrayDeque<>(maxInFlight);
+        try {
+            while (true) {
+                if (inFlight.size() == maxInFlight) {
+                    target.accept(getResult(inFlight.poll()));
+                }
+                if (!sources.hasNext()) {
+                    break;
+                }
+                JsonNode source = sources.next();
+                inFlight.add(CompletableFuture.supplyAsync(() -> objectTransformer.transform(plan, source), executor));
+            }
+            while (!inFlight.isEmpty()) {
+                target.accept(getResult(inFlight.poll()));
+            }
+        } finally {
+            inFlight.forEach(future -> future.cancel(false));
+        }
+    }
+
+    private JsonNode getResult(Future<JsonNode> future) {
+        try {
+            return Uninterruptibles.getUninterruptibly(future);
+        } catch (ExecutionException e) {
+            Throwables.throwIfUnchecked(e.getCause());
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private void write(JsonGenerator generator, JsonNode transformed) {
+        try {
+            OBJECT_MAPPER.writeTree(generator, transformed);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * records of a newline delimited JSON stream, holding only the properties the plan reads
+     */
+    private static class RecordIterator implements Iterator<JsonNode> {
+
+        private final TransformationPlan plan;
+        private final JsonParser parser;
+        private JsonToken next;
+
+        RecordIterator(TransformationPlan plan, JsonParser parser) {
+            this.plan = plan;
+            this.parser = parser;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null) {
+                try {
+                    next = parser.nextToken();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public JsonNode next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            next = null;
+            try {
+                return readNeededProperties(plan, parser);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.upgrade.camp.mappers;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * transformation map turned into code, see {@link MapperCompiler}
+ */
+@FunctionalInterface
+interface CompiledMapper {
+
+    void map(JsonNode source, ObjectNode target);
+}
@@ -0,0 +1,42 @@
+package com.upgrade.camp.mappers;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * builds the template as a W3C DOM document
+ */
+final class DomTemplateWriter implements TemplateWriter {
+
+    private final Document document = XmlDocuments.newDocument();
+    private final Deque<Node> parents = new ArrayDeque<>();
+
+    DomTemplateWriter() {
+        parents.push(document);
+    }
+
+    @Override
+    public void startElement(String name) {
+        Element element = document.createElement(name);
+        parents.peek().appendChild(element);
+        parents.push(element);
+    }
+
+    @Override
+    public void attribute(String name, String value) {
+        ((Element) parents.peek()).setAttribute(name, value);
+    }
+
+    @Override
+    public void endElement() {
+        parents.pop();
+    }
+
+    Document getDocument() {
+        return document;
+    }
+}
@@ -0,0 +1,120 @@
+package com.upgrade.camp.mappers;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.NullNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.util.function.BiConsumer;
+import java.util.function.UnaryOperator;
+
+import static com.upgrade.camp.mappers.PropertyMapper.*;
+
+/**
+ * turns a transformation plan into a chain of lambdas with every key, path length, mapping kind and
+ * missing value decision resolved up front. Running it does no dispatch nor key handling at all,
+ * leaving the JIT a straight sequence of node lookups and writes to inline
+ */
+final class MapperCompiler {
+
+    private MapperCompiler() {}
+
+    static CompiledMapper compile(TransformationPlan plan, MissingValuePolicy missingValuePolicy, JsonNode defaultValue) {
+        CompiledMapper[] mappers = plan.getMappings().stream()
+                                       .map(mapping -> compile(mapping, missingValuePolicy, defaultValue))
+                                       .toArray(CompiledMapper[]::new);
+        return (source, target) -> {
+            for (CompiledMapper mapper : mappers) {
+                mapper.map(source, target);
+            }
+        };
+    }
+
+    private static CompiledMapper compile(PropertyMapping mapping, MissingValuePolicy missingValuePolicy, JsonNode defaultValue) {
+        switch (mapping.getKind()) {
+            case LIST_TO_LIST:
+                return listToList(mapping, compile(mapping.getElement(), missingValuePolicy, defaultValue), missingValuePolicy);
+            case LIST_TO_PROPERTY:
+                return listToProperty(accessor(mapping.getSourcePath()), writer(mapping.getTargetPath(), missingValuePolicy, defaultValue));
+            default:
+                return property(accessor(mapping.getSourcePath()), writer(mapping.getTargetPath(), missingValuePolicy, defaultValue));
+        }
+    }
+
+    private static CompiledMapper property(UnaryOperator<JsonNode> accessor, BiConsumer<ObjectNode, JsonNode> writer) {
+        return (source, target) -> writer.accept(target, accessor.apply(source));
+    }
+
+    private static CompiledMapper listToProperty(UnaryOperator<JsonNode> accessor, BiConsumer<ObjectNode, JsonNode> writer) {
+        return (source, target) -> {
+            JsonNode list = accessor.apply(source);
+            writer.accept(target, list instanceof ArrayNode ? list.get(0) : null);
+        };
+    }
+
+    private static CompiledMapper listToList(PropertyMapping mapping, CompiledMapper element, MissingValuePolicy missingValuePolicy) {
+        String sourceList = mapping.getSourcePath()[0];
+        String targetList = mapping.getTargetPath()[0];
+        boolean createMissing = missingValuePolicy != MissingValuePolicy.SKIP;
+        return (source, target) -> {
+            JsonNode list = source.get(sourceList);
+            if (!(list instanceof ArrayNode)) {
+                if (createMissing) {
+                    getArrayNodeFrom(target, targetList);
+                }
+                return;
+            }
+            ArrayNode targets = getArrayNodeFrom(target, targetList);
+            for (int index = 0; index < list.size(); index++) {
+                element.map(list.get(index), getObjectAtIndex(targets, index));
+            }
+        };
+    }
+
+    /**
+     * @return function giving the value at the end of the path or null when any property of it is missing
+     */
+    private static UnaryOperator<JsonNode> accessor(String[] path) {
+        if (path.length == 1) {
+            String key = path[0];
+            return source -> source.get(key);
+        }
+        if (path.length == 2) {
+            String parentKey = path[0];
+            String key = path[1];
+            return source -> {
+                JsonNode parent = source.get(parentKey);
+                return parent == null ? null : parent.get(key);
+            };
+        }
+        return source -> getValue(source, path);
+    }
+
+    private static BiConsumer<ObjectNode, JsonNode> writer(String[] path, MissingValuePolicy missingValuePolicy, JsonNode defaultValue) {
+        UnaryOperator<ObjectNode> parent = parent(path);
+        String key = path[path.length - 1];
+        switch (missingValuePolicy) {
+            case SKIP:
+                return (target, value) -> {
+                    if (value != null) {
+                        parent.apply(target).set(key, value);
+                    }
+                };
+            case DEFAULT:
+                return (target, value) -> parent.apply(target).set(key, value != null ? value : defaultValue.deepCopy());
+            default:
+                return (target, value) -> parent.apply(target).set(key, value != null ? value : NullNode.getInstance());
+        }
+    }
+
+    /**
+     * @return function building the nested objects of the path but its last property
+     */
+    private static UnaryOperator<ObjectNode> parent(String[] path) {
+        int depth = path.length - 1;
+        if (depth == 0) {
+            return UnaryOperator.identity();
+        }
+        return target -> buildSubObjectsAndReturnLastNode(target, path, depth);
+    }
+}
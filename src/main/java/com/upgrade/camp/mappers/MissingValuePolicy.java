@@ -0,0 +1,20 @@
+package com.upgrade.camp.mappers;
+
+/**
+ * what a transformation writes into the target when the source lacks the mapped property
+ * or a list mapped into a single property is absent or empty
+ */
+public enum MissingValuePolicy {
+    /**
+     * target property is written as JSON null
+     */
+    NULL,
+    /**
+     * target property is not written at all
+     */
+    SKIP,
+    /**
+     * target property gets the default value of the transformer
+     */
+    DEFAULT
+}
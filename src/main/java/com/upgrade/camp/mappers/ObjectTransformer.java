@@ -2,15 +2,16 @@ package com.upgrade.camp.mappers;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.NullNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.google.common.io.Resources;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.lang3.StringUtils;
 
 import java.nio.charset.StandardCharsets;
 import java.util.List;
-import java.util.stream.IntStream;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import static com.fasterxml.jackson.databind.node.JsonNodeFactory.instance;
 import static java.lang.String.format;
@@ -25,116 +26,133 @@ public class ObjectTransformer {
      * CLASS used to transform a JSON object into another using a file as a map (research)
      */
 
-    private static final String DOT = ".";
-    private static final Integer ONE = 1;
     private static final Integer ZERO = 0;
+    private static final Integer ONE = 1;
     private static final String MESSAGE = "message=\"Mapping property of entity={}\", source={}, target={}";
-    private static final String MESSAGE_LIST_CONVERSION = "message=\"Property marked as list, changing type\", property={}";
     private static final String RESOURCE_MAP = "transformation/%s_map";
-    private static final String LIST_PREFIX = "l_";
-    private static final String COMMA = ",";
 
-    @SneakyThrows
-    public JsonNode transformIntoFormat(String objectApiName, JsonNode source) {
-        log.debug("message=\"Transformation for {} initialized\"", objectApiName);
-        List<String> lines = Resources.readLines(Resources.getResource(format(RESOURCE_MAP, objectApiName)), StandardCharsets.UTF_8);
-        ObjectNode target = instance.objectNode();
-        lines.stream().forEach(property -> {
-            String targetKey = property.split(COMMA)[0];
-            String sourceKey = property.split(COMMA)[1];
-            log.trace(MESSAGE, objectApiName, sourceKey, targetKey);
-            fixIncompatibleTypesAndMap(source, target, sourceKey, targetKey);
-        });
-        log.debug("message=\"Transformation for {} ended\"", objectApiName);
-        return target;
+    private final ConcurrentMap<String, TransformationPlan> plans = new ConcurrentHashMap<>();
+    private final MissingValuePolicy missingValuePolicy;
+    private final JsonNode defaultValue;
+    private final boolean compileMappers;
+
+    public ObjectTransformer() {
+        this(MissingValuePolicy.NULL, NullNode.getInstance());
     }
 
     /**
-     * method used to choose correct method call between compatible and incompatible types in source and target
-     * add case if (targetKey.startsWith(LIST_PREFIX)
-     * undone until we figure out how to do properly the mapping of several objects into a list
+     * @param defaultValue written for missing values when the policy is {@link MissingValuePolicy#DEFAULT}
      */
-    private void fixIncompatibleTypesAndMap(JsonNode source, ObjectNode target, String sourceKey, String targetKey) {
-        if (targetKey.startsWith(LIST_PREFIX) && sourceKey.startsWith(LIST_PREFIX)) {
-            mapPropertiesListToList(source, target, sourceKey, targetKey);
-            return;
+    public ObjectTransformer(MissingValuePolicy missingValuePolicy, JsonNode defaultValue) {
+        this(missingValuePolicy, defaultValue, false);
+    }
+
+    /**
+     * @param compileMappers when true every map is turned into a {@link CompiledMapper} on first use instead of
+     *                       being interpreted mapping by mapping, meant for hot maps
+     */
+    public ObjectTransformer(MissingValuePolicy missingValuePolicy, JsonNode defaultValue, boolean compileMappers) {
+        this.missingValuePolicy = missingValuePolicy;
+        this.defaultValue = defaultValue;
+        this.compileMappers = compileMappers;
+    }
+
+    public JsonNode transformIntoFormat(String objectApiName, JsonNode source) {
+        return transform(planFor(objectApiName), source);
+    }
+
+    TransformationPlan planFor(String objectApiName) {
+        return plans.computeIfAbsent(objectApiName, this::loadPlan);
+    }
+
+    JsonNode transform(TransformationPlan plan, JsonNode source) {
+        log.debug("message=\"Transformation for {} initialized\"", plan.getObjectApiName());
+        ObjectNode target = instance.objectNode();
+        if (plan.getMapper() != null) {
+            plan.getMapper().map(source, target);
+        } else {
+            interpret(plan, source, target);
         }
-        if (sourceKey.startsWith(LIST_PREFIX)) {
-            fixIncompatibleTypesInSourceAndMap(source, target, sourceKey, targetKey);
-            return;
+        log.debug("message=\"Transformation for {} ended\"", plan.getObjectApiName());
+        return target;
+    }
+
+    private void interpret(TransformationPlan plan, JsonNode source, ObjectNode target) {
+        for (PropertyMapping mapping : plan.getMappings()) {
+            log.trace(MESSAGE, plan.getObjectApiName(), mapping.getSourceKey(), mapping.getTargetKey());
+            fixIncompatibleTypesAndMap(source, target, mapping);
         }
-        chooseAndExecutePropertyMapperMethod(source, target, sourceKey, targetKey);
     }
 
-    private void mapPropertiesListToList(JsonNode source, ObjectNode target, String sourceKey, String targetKey) {
-        String targetFirstKey = targetKey.substring(ZERO, targetKey.indexOf(DOT)).replaceFirst(LIST_PREFIX, StringUtils.EMPTY);
-        String targetPropertyChain = targetKey.substring(targetKey.indexOf(DOT) + ONE);
-        String sourcePropertyChain = sourceKey.substring(sourceKey.indexOf(DOT) + ONE);
-        ArrayNode sourceList = (ArrayNode) source.get(sourceKey.substring(ZERO, sourceKey.indexOf(DOT)).replaceFirst(LIST_PREFIX, StringUtils.EMPTY));
-        ArrayNode targetList = getArrayNodeFrom(target, targetFirstKey);
-        IntStream.range(ZERO, sourceList.size())
-                .forEach(
-                        index ->
-                                fixIncompatibleTypesAndMap(getObjectAtIndex(sourceList, index), getObjectAtIndex(targetList, index), sourcePropertyChain,
-                                        targetPropertyChain));
+    /**
+     * map file is read from the classpath and compiled only on the first transformation of the object
+     */
+    @SneakyThrows
+    private TransformationPlan loadPlan(String objectApiName) {
+        List<String> lines = Resources.readLines(Resources.getResource(format(RESOURCE_MAP, objectApiName)), StandardCharsets.UTF_8);
+        log.debug("message=\"Transformation map compiled\", object={}, properties={}", objectApiName, lines.size());
+        TransformationPlan plan = TransformationPlan.compile(objectApiName, lines);
+        return compileMappers ? plan.withMapper(MapperCompiler.compile(plan, missingValuePolicy, defaultValue)) : plan;
     }
 
     /**
-     * method used when trying to map list property of source into single property of target.
-     * current approach only takes the first value in list to be in the single property of target
+     * method used to choose correct method call between compatible and incompatible types in source and target
+     * add case if (targetKey.startsWith(LIST_PREFIX)
+     * undone until we figure out how to do properly the mapping of several objects into a list
      */
-    private void fixIncompatibleTypesInSourceAndMap(JsonNode source, ObjectNode target, String sourceKey, String targetKey) {
-        String withoutPrefix = sourceKey.replace(LIST_PREFIX, StringUtils.EMPTY);
-        JsonNode newSource = buildFacadeObject(source, withoutPrefix);
-        chooseAndExecutePropertyMapperMethod(newSource, target, withoutPrefix, targetKey);
+    private void fixIncompatibleTypesAndMap(JsonNode source, ObjectNode target, PropertyMapping mapping) {
+        switch (mapping.getKind()) {
+            case LIST_TO_LIST:
+                mapPropertiesListToList(source, target, mapping);
+                return;
+            case LIST_TO_PROPERTY:
+                setValue(target, mapping, getFirstValue(source, mapping));
+                return;
+            default:
+                setValue(target, mapping, getValue(source, mapping.getSourcePath()));
+        }
     }
 
     /**
-     * method uses to call property mapper method according to the nested level of the properties
-     * between source and target
+     * a missing source list maps no element, the target list is left empty or, when skipping, not created
      */
-    private void chooseAndExecutePropertyMapperMethod(JsonNode source, ObjectNode target, String sourceKey, String targetKey) {
-        Integer quantityOfDotsInSourceKey = StringUtils.countMatches(sourceKey, DOT);
-        Integer quantityOfDotsInTargetKey = StringUtils.countMatches(targetKey, DOT);
-        if (quantityOfDotsInSourceKey >= ONE && quantityOfDotsInTargetKey >= ONE) {
-            nestedPropertyToNestedProperty(source, target, sourceKey, targetKey);
+    private void mapPropertiesListToList(JsonNode source, ObjectNode target, PropertyMapping mapping) {
+        JsonNode sourceList = source.get(mapping.getSourcePath()[ZERO]);
+        if (!(sourceList instanceof ArrayNode) && missingValuePolicy == MissingValuePolicy.SKIP) {
             return;
         }
-        if (quantityOfDotsInSourceKey >= ONE && quantityOfDotsInTargetKey.equals(ZERO)) {
-            nestedPropertyToProperty(source, target, sourceKey, targetKey);
+        ArrayNode targetList = getArrayNodeFrom(target, mapping.getTargetPath()[ZERO]);
+        if (!(sourceList instanceof ArrayNode)) {
             return;
         }
-        if (quantityOfDotsInSourceKey.equals(ZERO) && quantityOfDotsInTargetKey >= ONE) {
-            propertyToNestedProperty(source, target, sourceKey, targetKey);
-            return;
+        for (int index = ZERO; index < sourceList.size(); index++) {
+            fixIncompatibleTypesAndMap(sourceList.get(index), getObjectAtIndex(targetList, index), mapping.getElement());
         }
-        propertyToProperty(source, target, sourceKey, targetKey);
-    }
-
-    private ObjectNode getObjectAtIndex(ArrayNode list, Integer index) {
-        return list.get(index) != null ? (ObjectNode) list.get(index) : list.addObject();
     }
 
-    private ArrayNode getArrayNodeFrom(ObjectNode target, String key) {
-        return target.has(key) ? (ArrayNode) target.get(key) : target.putArray(key);
+    /**
+     * method used when trying to map list property of source into single property of target.
+     * current approach only takes the first value in list to be in the single property of target
+     * @return null when the list is missing or empty
+     */
+    private JsonNode getFirstValue(JsonNode source, PropertyMapping mapping) {
+        JsonNode list = getValue(source, mapping.getSourcePath());
+        return list instanceof ArrayNode ? list.get(ZERO) : null;
     }
 
     /**
-     * this method will be used until we decide how to treat mapping between a list into
-     * a single property of target
-     * First value will be taken
+     * @param value null when missing in source, the missing value policy decides what is written
      */
-    private ObjectNode buildFacadeObject(JsonNode source, String key) {
-        try {
-            ObjectNode newSource = instance.objectNode();
-            String lastProperty = key.substring(key.lastIndexOf(DOT) + ONE);
-            buildSubObjectsAndReturnLastNode(newSource, key);
-            ArrayNode arrayNode = (ArrayNode) (getLastNode(source, key)).get(lastProperty);
-            newSource.set(key, arrayNode.get(ZERO));
-            return newSource;
-        } catch (Exception e) {
-            log.info("message=\"Property not found in object source\", property={}", key);
-            throw e;
+    private void setValue(ObjectNode target, PropertyMapping mapping, JsonNode value) {
+        if (value == null) {
+            log.trace("message=\"Property not found in object source\", property={}", mapping.getSourceKey());
+            if (missingValuePolicy == MissingValuePolicy.SKIP) {
+                return;
+            }
+            value = missingValuePolicy == MissingValuePolicy.DEFAULT ? defaultValue.deepCopy() : NullNode.getInstance();
         }
+        String[] targetPath = mapping.getTargetPath();
+        buildSubObjectsAndReturnLastNode(target, targetPath, targetPath.length - ONE).set(targetPath[targetPath.length - ONE], value);
     }
+
 }
@@ -2,69 +2,45 @@ package com.upgrade.camp.mappers;
 
 
 import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.JsonNodeFactory;
 import com.fasterxml.jackson.databind.node.ObjectNode;
-import lombok.SneakyThrows;
 
 public class PropertyMapper {
 
-    private static final String DOT = ".";
-    private static final Integer ONE = 1;
     private static final Integer ZERO = 0;
     private static final JsonNodeFactory FACTORY = JsonNodeFactory.instance;
 
     private PropertyMapper() {}
 
-    public static void propertyToProperty(JsonNode source, ObjectNode target, String sourceKey, String targetKey) {
-        JsonNode sourceValue = source.get(sourceKey);
-        target.set(targetKey, sourceValue);
-    }
-
-    public static void propertyToNestedProperty(JsonNode source, ObjectNode target, String sourceKey, String targetKey) {
-        String lastPropertyToBeInserted = targetKey.substring(targetKey.lastIndexOf(DOT) + ONE, targetKey.length());
-        String chainOfProperties = targetKey.substring(ZERO, targetKey.lastIndexOf(DOT));
-        ObjectNode lastBuiltNode = buildSubObjectsAndReturnLastNode(target, chainOfProperties);
-        propertyToProperty(source, lastBuiltNode, sourceKey, lastPropertyToBeInserted);
-    }
-
-    public static void nestedPropertyToProperty(JsonNode source, ObjectNode target, String sourceKey, String targetKey) {
-        try {
-            JsonNode nodeValue = getLastNode(source, sourceKey);
-            String lastProperty = sourceKey.substring(sourceKey.lastIndexOf(DOT) + ONE);
-            propertyToProperty(nodeValue, target, lastProperty, targetKey);
-        } catch (Exception e) {
-            target.set(targetKey, null);
+    /**
+     * builds the first {@code depth} segments of the path as nested objects
+     */
+    public static ObjectNode buildSubObjectsAndReturnLastNode(ObjectNode target, String[] path, int depth) {
+        ObjectNode lastNode = target;
+        for (int i = ZERO; i < depth; i++) {
+            lastNode = buildOrReturnNodeFound(lastNode, path[i]);
         }
+        return lastNode;
     }
 
-    public static void nestedPropertyToNestedProperty(JsonNode source, ObjectNode target, String sourceKey, String targetKey) {
-        String lastKey = targetKey.substring(targetKey.lastIndexOf(DOT) + ONE);
-        String keyChain = targetKey.substring(ZERO, targetKey.lastIndexOf(DOT));
-        ObjectNode lastNode = buildSubObjectsAndReturnLastNode(target, keyChain);
-        nestedPropertyToProperty(source, lastNode, sourceKey, lastKey);
+    /**
+     * @return the value at the end of the path or null when any property of it is missing
+     */
+    public static JsonNode getValue(JsonNode source, String[] path) {
+        JsonNode node = source;
+        for (int i = ZERO; i < path.length && node != null; i++) {
+            node = node.get(path[i]);
+        }
+        return node;
     }
 
-    public static ObjectNode buildSubObjectsAndReturnLastNode(ObjectNode target, String targetKey) {
-        if (!targetKey.contains(DOT)) {
-            return buildOrReturnNodeFound(target, targetKey);
-        }
-        String keyRoot = targetKey.substring(ZERO, targetKey.indexOf(DOT));
-        String chainOfProperties = targetKey.substring(targetKey.indexOf(DOT) + ONE);
-        ObjectNode middleObject = buildOrReturnNodeFound(target, keyRoot);
-        return buildSubObjectsAndReturnLastNode(middleObject, chainOfProperties);
+    public static ObjectNode getObjectAtIndex(ArrayNode list, int index) {
+        return list.get(index) != null ? (ObjectNode) list.get(index) : list.addObject();
     }
 
-    @SneakyThrows
-    public static JsonNode getLastNode(JsonNode source, String sourceKey) {
-        if (source != null && sourceKey.contains(DOT)) {
-            String keyRoot = sourceKey.substring(0, sourceKey.indexOf(DOT));
-            String keyChain = sourceKey.substring(sourceKey.indexOf(DOT) + ONE);
-            return getLastNode(source.get(keyRoot), keyChain);
-        }
-        if (source != null && source.has(sourceKey)) {
-            return source;
-        }
-        throw new Exception(sourceKey);
+    public static ArrayNode getArrayNodeFrom(ObjectNode target, String key) {
+        return target.has(key) ? (ArrayNode) target.get(key) : target.putArray(key);
     }
 
     private static ObjectNode buildOrReturnNodeFound(ObjectNode target, String key) {
@@ -0,0 +1,78 @@
+package com.upgrade.camp.mappers;
+
+import com.google.common.base.Splitter;
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * one line of a transformation map, its keys split into segments and its kind resolved once
+ */
+@Getter(AccessLevel.PACKAGE)
+final class PropertyMapping {
+
+    private static final Splitter DOT_SPLITTER = Splitter.on('.');
+    private static final String DOT = ".";
+    private static final String LIST_PREFIX = "l_";
+    private static final String COMMA = ",";
+
+    enum Kind {
+        /**
+         * list of objects in source into list of objects in target, the element mapping runs per index
+         */
+        LIST_TO_LIST,
+        /**
+         * list in source into a single property of target, only the first value is taken
+         */
+        LIST_TO_PROPERTY,
+        PROPERTY
+    }
+
+    private final Kind kind;
+    private final String sourceKey;
+    private final String targetKey;
+    private final String[] sourcePath;
+    private final String[] targetPath;
+    /**
+     * mapping applied to every element for LIST_TO_LIST
+     */
+    private final PropertyMapping element;
+
+    private PropertyMapping(Kind kind, String sourceKey, String targetKey, String[] sourcePath, String[] targetPath,
+                            PropertyMapping element) {
+        this.kind = kind;
+        this.sourceKey = sourceKey;
+        this.targetKey = targetKey;
+        this.sourcePath = sourcePath;
+        this.targetPath = targetPath;
+        this.element = element;
+    }
+
+    /**
+     * @param line target key and source key separated by a comma, as found in the map file
+     */
+    static PropertyMapping compile(String line) {
+        String[] keys = line.split(COMMA);
+        return compile(keys[1], keys[0]);
+    }
+
+    static PropertyMapping compile(String sourceKey, String targetKey) {
+        if (targetKey.startsWith(LIST_PREFIX) && sourceKey.startsWith(LIST_PREFIX)) {
+            String sourceList = sourceKey.substring(0, sourceKey.indexOf(DOT)).replaceFirst(LIST_PREFIX, "");
+            String targetList = targetKey.substring(0, targetKey.indexOf(DOT)).replaceFirst(LIST_PREFIX, "");
+            PropertyMapping element = compile(sourceKey.substring(sourceKey.indexOf(DOT) + 1), targetKey.substring(targetKey.indexOf(DOT) + 1));
+            return new PropertyMapping(Kind.LIST_TO_LIST, sourceKey, targetKey, new String[]{sourceList}, new String[]{targetList}, element);
+        }
+        if (sourceKey.startsWith(LIST_PREFIX)) {
+            String withoutPrefix = sourceKey.replace(LIST_PREFIX, "");
+            return new PropertyMapping(Kind.LIST_TO_PROPERTY, sourceKey, targetKey, split(withoutPrefix), split(targetKey), null);
+        }
+        return new PropertyMapping(Kind.PROPERTY, sourceKey, targetKey, split(sourceKey), split(targetKey), null);
+    }
+
+    private static String[] split(String key) {
+        List<String> segments = DOT_SPLITTER.splitToList(key);
+        return segments.toArray(new String[0]);
+    }
+}
@@ -2,13 +2,9 @@ package com.upgrade.camp.mappers;
 
 
 import com.fasterxml.jackson.databind.JsonNode;
-import lombok.SneakyThrows;
-import org.w3c.dom.Attr;
 import org.w3c.dom.Document;
-import org.w3c.dom.Element;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.OutputStream;
 
 public class SchemaToXMLTemplateTransformer {
 
@@ -16,71 +12,88 @@ public class SchemaToXMLTemplateTransformer {
     /**
      * class used to transform JSON Schema to XML template
      */
+    private static final TemplateCache TEMPLATES = new TemplateCache(256);
 
-    @SneakyThrows
+    /**
+     * templates are generated once per schema, later calls get a copy of the cached one
+     */
     public static Document toXMLTemplate(JsonNode schema){
-        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-        DocumentBuilder documentBuilder = factory.newDocumentBuilder();
-        Document document = documentBuilder.newDocument();
-        Element root = document.createElement(schema.get("title").asText());
-        document.appendChild(root);
-        JsonNode propertiesNode = schema.get("properties");
-        propertiesNode.fieldNames().forEachRemaining(prop -> root.appendChild(mapProperty(prop,propertiesNode.get(prop),document)));
+        return TEMPLATES.get(schema, SchemaToXMLTemplateTransformer::generateXMLTemplate);
+    }
+
+    /**
+     * writes the same template {@link #toXMLTemplate} serializes to, in a single pass without building a document.
+     * the output stream is left open
+     */
+    public static void writeXMLTemplate(JsonNode schema, OutputStream output){
+        try (StreamTemplateWriter writer = new StreamTemplateWriter(output)) {
+            writeTemplate(schema, writer);
+        }
+    }
 
-        return document;
+    private static Document generateXMLTemplate(JsonNode schema){
+        DomTemplateWriter writer = new DomTemplateWriter();
+        writeTemplate(schema, writer);
+        return writer.getDocument();
+    }
+
+    private static void writeTemplate(JsonNode schema, TemplateWriter writer){
+        writer.startElement(schema.get("title").asText());
+        JsonNode propertiesNode = schema.get("properties");
+        propertiesNode.fieldNames().forEachRemaining(prop -> mapProperty(prop,propertiesNode.get(prop),writer));
+        writer.endElement();
     }
 
-    private static Element mapProperty(String key,JsonNode jsonNode,Document document){
+    private static void mapProperty(String key,JsonNode jsonNode,TemplateWriter writer){
         if(isSingleProperty(jsonNode)){
-            return mapSingleProperty(key,jsonNode,document);
+            mapSingleProperty(key,jsonNode,writer);
+            return;
         }
         if(isObjectProperty(jsonNode)){
-            return mapObjectProperty(key,jsonNode,document);
+            mapObjectProperty(key,jsonNode,writer);
+            return;
         }
         if(isEnumProperty(jsonNode)){
-            return mapEnumProperty(key,jsonNode,document);
+            mapEnumProperty(key,jsonNode,writer);
+            return;
         }
-        return mapListProperty(key,jsonNode,document);
+        mapListProperty(key,jsonNode,writer);
     }
 
 
-    private static Element mapSingleProperty(String key,JsonNode schema,Document document){
-        Element element = document.createElement(key);
-        schema.fieldNames().forEachRemaining(prop ->{
-            Attr attribute = document.createAttribute(prop);
-            attribute.setValue(schema.get(prop).asText());
-            element.setAttributeNode(attribute);
-        });
-        return element;
+    private static void mapSingleProperty(String key,JsonNode schema,TemplateWriter writer){
+        writer.startElement(key);
+        schema.fieldNames().forEachRemaining(prop -> writer.attribute(prop,schema.get(prop).asText()));
+        writer.endElement();
     }
 
-    private static Element mapEnumProperty(String key,JsonNode schema, Document document){
-        Element element = document.createElement(key);
-        element.setAttribute("type","string");
-        element.setAttribute("value","enum");
-        return element;
+    private static void mapEnumProperty(String key,JsonNode schema, TemplateWriter writer){
+        writer.startElement(key);
+        writer.attribute("type","string");
+        writer.attribute("value","enum");
+        writer.endElement();
     }
 
-    private static Element mapObjectProperty(String key,JsonNode schema, Document document){
-        Element element = document.createElement(key);
-        element.setAttribute("type","object");
+    private static void mapObjectProperty(String key,JsonNode schema, TemplateWriter writer){
+        writer.startElement(key);
+        writer.attribute("type","object");
         JsonNode additionalProperties =  schema.get("additionalProperties");
-        element.setAttribute("additionalProperties",additionalProperties != null ? additionalProperties.asText() : "false");
+        writer.attribute("additionalProperties",additionalProperties != null ? additionalProperties.asText() : "false");
 
         JsonNode properties = schema.get("properties");
-        properties.fieldNames().forEachRemaining(prop -> element.appendChild(mapProperty(prop,properties.get(prop),document)));
-        return element;
+        properties.fieldNames().forEachRemaining(prop -> mapProperty(prop,properties.get(prop),writer));
+        writer.endElement();
     }
 
-    private static Element mapListProperty(String key,JsonNode schema,Document document){
-        Element element = document.createElement(key);
-        Element listElement = document.createElement("item");
-        element.appendChild(listElement);
-        element.setAttribute("type","array");
+    private static void mapListProperty(String key,JsonNode schema,TemplateWriter writer){
+        writer.startElement(key);
+        writer.attribute("type","array");
+        writer.startElement("item");
         JsonNode itemsNode = schema.get("items");
         JsonNode propertiesNode = itemsNode.get("properties");
-        propertiesNode.fieldNames().forEachRemaining(prop -> listElement.appendChild(mapProperty(prop,propertiesNode.get(prop),document)));
-        return element;
+        propertiesNode.fieldNames().forEachRemaining(prop -> mapProperty(prop,propertiesNode.get(prop),writer));
+        writer.endElement();
+        writer.endElement();
     }
 
     private static  Boolean isObjectProperty(JsonNode jsonNode){
@@ -2,12 +2,9 @@ package com.upgrade.camp.mappers;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ArrayNode;
-import lombok.SneakyThrows;
 import org.w3c.dom.Document;
-import org.w3c.dom.Element;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.OutputStream;
 
 
 public class SchemaToXSDTemplateTransformer {
@@ -17,110 +14,130 @@ public class SchemaToXSDTemplateTransformer {
      * class used to transform JSON Schema to XSD Template
      */
     private static final String DATE_FORMAT = "(\\d{4})-(\\d{2})-(\\d{2})T(\\d{2}):(\\d{2}):(\\d{2}).(\\d{4})Z";
+    private static final TemplateCache TEMPLATES = new TemplateCache(256);
 
-
-    @SneakyThrows
+    /**
+     * templates are generated once per schema, later calls get a copy of the cached one
+     */
     public static Document toXSDTemplate(JsonNode schema) {
-        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-        DocumentBuilder documentBuilder = factory.newDocumentBuilder();
-        Document document = documentBuilder.newDocument();
-        Element rootTag = createSchemaElement(document);
-        document.appendChild(rootTag);
-        Element element = createRootElement(document,schema);
-        Element complexType = document.createElement("xs:complexType");
-        element.appendChild(complexType);
-        Element elt = document.createElement("xs:sequence");
-        complexType.appendChild(elt);
-        rootTag.appendChild(element);
+        return TEMPLATES.get(schema, SchemaToXSDTemplateTransformer::generateXSDTemplate);
+    }
+
+    /**
+     * writes the same template {@link #toXSDTemplate} serializes to, in a single pass without building a document.
+     * the output stream is left open
+     */
+    public static void writeXSDTemplate(JsonNode schema, OutputStream output) {
+        try (StreamTemplateWriter writer = new StreamTemplateWriter(output)) {
+            writeTemplate(schema, writer);
+        }
+    }
+
+    private static Document generateXSDTemplate(JsonNode schema) {
+        DomTemplateWriter writer = new DomTemplateWriter();
+        writeTemplate(schema, writer);
+        return writer.getDocument();
+    }
 
+    private static void writeTemplate(JsonNode schema, TemplateWriter writer) {
+        createSchemaElement(writer);
+        createRootElement(writer,schema);
+        writer.startElement("xs:complexType");
+        writer.startElement("xs:sequence");
         JsonNode propertiesNode = schema.get("properties");
-        propertiesNode.fieldNames().forEachRemaining(prop -> elt.appendChild(mapProperty(prop,propertiesNode.get(prop),document)));
-        return document;
+        propertiesNode.fieldNames().forEachRemaining(prop -> mapProperty(prop,propertiesNode.get(prop),writer));
+        writer.endElement();
+        writer.endElement();
+        writer.endElement();
+        writer.endElement();
     }
 
-    private static Element mapProperty(String key,JsonNode jsonNode,Document document){
+    private static void mapProperty(String key,JsonNode jsonNode,TemplateWriter writer){
         if(isSingleProperty(jsonNode)){
-            return mapSingleProperty(key,jsonNode,document);
+            mapSingleProperty(key,jsonNode,writer);
+            return;
         }
         if(isObjectProperty(jsonNode)){
-            return mapComplexProperty(key,jsonNode,document);
+            mapComplexProperty(key,jsonNode,writer);
+            return;
         }
         if(isEnumProperty(jsonNode)){
-            return mapEnumProperty(key,jsonNode,document);
+            mapEnumProperty(key,jsonNode,writer);
+            return;
         }
-        return mapListProperty(key,jsonNode,document);
+        mapListProperty(key,jsonNode,writer);
     }
 
 
-    private static Element mapListProperty(String key,JsonNode schema,Document document){
-        Element listElement = document.createElement("xs:element");
-        Element complexType = document.createElement("xs:complexType");
-        Element sequence = document.createElement("xs:sequence");
-        listElement.setAttribute("name",key);
-        listElement.setAttribute("maxOccurs","unbounded");
-        listElement.setAttribute("minOccurs","0");
+    private static void mapListProperty(String key,JsonNode schema,TemplateWriter writer){
+        writer.startElement("xs:element");
+        writer.attribute("name",key);
+        writer.attribute("maxOccurs","unbounded");
+        writer.attribute("minOccurs","0");
+        writer.startElement("xs:complexType");
+        writer.startElement("xs:sequence");
         JsonNode itemsNode = schema.get("items");
         JsonNode propertiesNode = itemsNode.get("properties");
-        propertiesNode.fieldNames().forEachRemaining( prop -> sequence.appendChild(mapProperty(prop,propertiesNode.get(prop),document)));
-        listElement.appendChild(complexType);
-        complexType.appendChild(sequence);
-        return listElement;
-    }
-
-    private static Element mapEnumProperty(String key,JsonNode schema, Document document){
-        Element element = document.createElement("xs:element");
-        Element simpleType = document.createElement("xs:simpleType");
-        Element restriction = document.createElement("xs:restriction");
-        element.setAttribute("name",key);
-        restriction.setAttribute("base","xs:string");
-        element.appendChild(simpleType);
-        simpleType.appendChild(restriction);
+        propertiesNode.fieldNames().forEachRemaining( prop -> mapProperty(prop,propertiesNode.get(prop),writer));
+        writer.endElement();
+        writer.endElement();
+        writer.endElement();
+    }
+
+    private static void mapEnumProperty(String key,JsonNode schema, TemplateWriter writer){
+        writer.startElement("xs:element");
+        writer.attribute("name",key);
+        writer.startElement("xs:simpleType");
+        writer.startElement("xs:restriction");
+        writer.attribute("base","xs:string");
         ArrayNode enums = (ArrayNode) schema.get("enum");
         enums.elements().forEachRemaining(en -> {
-            Element enumeration = document.createElement("xs:enumeration");
-            enumeration.setAttribute("value",en.asText());
-            restriction.appendChild(enumeration);
+            writer.startElement("xs:enumeration");
+            writer.attribute("value",en.asText());
+            writer.endElement();
         });
-        return element;
+        writer.endElement();
+        writer.endElement();
+        writer.endElement();
     }
 
-    private static Element mapComplexProperty(String key,JsonNode schema,Document document){
-        Element element = document.createElement("xs:element");
-        Element complexType = document.createElement("xs:complexType");
-        Element sequence = document.createElement("xs:sequence");
-        element.setAttribute("name",key);
-        element.appendChild(complexType);
-        complexType.appendChild(sequence);
+    private static void mapComplexProperty(String key,JsonNode schema,TemplateWriter writer){
+        writer.startElement("xs:element");
+        writer.attribute("name",key);
+        writer.startElement("xs:complexType");
+        writer.startElement("xs:sequence");
         JsonNode properties = schema.get("properties");
-        properties.fieldNames().forEachRemaining(prop -> sequence.appendChild(mapProperty(prop,properties.get(prop),document)));
-        return element;
+        properties.fieldNames().forEachRemaining(prop -> mapProperty(prop,properties.get(prop),writer));
+        writer.endElement();
+        writer.endElement();
+        writer.endElement();
     }
 
-    private static Element mapSingleProperty(String key,JsonNode jsonNode,Document document){
+    private static void mapSingleProperty(String key,JsonNode jsonNode,TemplateWriter writer){
         String type = jsonNode.get("type").asText();
         JsonNode enumNode = jsonNode.get("enum");
         JsonNode minNode = jsonNode.get("minLength");
         JsonNode maxNode = jsonNode.get("maxLength");
         JsonNode patternNode = jsonNode.get("pattern");
         if("string".equalsIgnoreCase(type) && enumNode != null && !enumNode.isNull()){
-            return mapStringEnumProperty(key,jsonNode,document);
+            mapStringEnumProperty(key,jsonNode,writer);
+            return;
         }
         if("string".equalsIgnoreCase(type) && (minNode != null  || maxNode != null || patternNode != null)){
-            return mapStringWithConditionsProperty(key,jsonNode,document);
+            mapStringWithConditionsProperty(key,jsonNode,writer);
+            return;
         }
-        return mapCommonProperty(key,jsonNode,document);
+        mapCommonProperty(key,jsonNode,writer);
     }
 
-    private static Element createSchemaElement(Document document){
-        Element element = document.createElement("xs:schema");
-        element.setAttribute("xmlns:xs","http://www.w3.org/2001/XMLSchema");
-        return element;
+    private static void createSchemaElement(TemplateWriter writer){
+        writer.startElement("xs:schema");
+        writer.attribute("xmlns:xs","http://www.w3.org/2001/XMLSchema");
     }
 
-    private static Element createRootElement(Document document,JsonNode schema){
-        Element eltm = document.createElement("xs:element");
-        eltm.setAttribute("name",schema.get("title").asText());
-        return eltm;
+    private static void createRootElement(TemplateWriter writer,JsonNode schema){
+        writer.startElement("xs:element");
+        writer.attribute("name",schema.get("title").asText());
     }
 
     private static  Boolean isObjectProperty(JsonNode jsonNode){
@@ -142,96 +159,95 @@ public class SchemaToXSDTemplateTransformer {
                 || (jsonNode.get("enum") != null);
     }
 
-    private static Element mapCommonProperty(String key,JsonNode jsonNode,Document document){
-        Element element = document.createElement("xs:element");
-        element.setAttribute("name",key);
+    private static void mapCommonProperty(String key,JsonNode jsonNode,TemplateWriter writer){
+        writer.startElement("xs:element");
+        writer.attribute("name",key);
         if("number".equalsIgnoreCase(jsonNode.get("type").asText())){
             // element.setAttribute("type","xs:integer");
-            completeNumberElementWithRestrictions(element,jsonNode,document);
+            completeNumberElementWithRestrictions(jsonNode,writer);
         }else if(jsonNode.get("format") != null){
-            Element restriction = createDateFormatRestriction(document);
-            element.appendChild(restriction);
+            createDateFormatRestriction(writer);
         }
         else{
-            element.setAttribute("type","xs:" + jsonNode.get("type").asText());
+            writer.attribute("type","xs:" + jsonNode.get("type").asText());
         }
-        return element;
+        writer.endElement();
     }
 
-    private static void completeNumberElementWithRestrictions(Element element,JsonNode jsonNode,Document document){
+    private static void completeNumberElementWithRestrictions(JsonNode jsonNode,TemplateWriter writer){
         if(jsonNode.get("maximum") == null && jsonNode.get("minimum") == null){
-            element.setAttribute("type","xs:integer");
+            writer.attribute("type","xs:integer");
             return;
         }
-        Element simpleType = document.createElement("xs:simpleType");
-        Element restriction = document.createElement("xs:restriction");
-        Element min = document.createElement("xs:minInclusive");
-        Element max = document.createElement("xs:maxInclusive");
+        writer.startElement("xs:simpleType");
+        writer.startElement("xs:restriction");
+        writer.attribute("base","xs:integer");
         if(jsonNode.get("maximum") != null){
-            max.setAttribute("value",jsonNode.get("maximum").asText());
-            restriction.appendChild(max);
+            writer.startElement("xs:maxInclusive");
+            writer.attribute("value",jsonNode.get("maximum").asText());
+            writer.endElement();
         }
         if(jsonNode.get("minimum") != null){
-            min.setAttribute("value",jsonNode.get("minimum").asText());
-            restriction.appendChild(min);
+            writer.startElement("xs:minInclusive");
+            writer.attribute("value",jsonNode.get("minimum").asText());
+            writer.endElement();
         }
-        restriction.setAttribute("base","xs:integer");
-        simpleType.appendChild(restriction);
-        element.appendChild(simpleType);
-    }
-
-    private static Element createDateFormatRestriction(Document document){
-        Element simpleType = document.createElement("xs:simpleType");
-        Element restriction = document.createElement("xs:restriction");
-        Element pattern = document.createElement("xs:pattern");
-        pattern.setAttribute("value",DATE_FORMAT);
-        restriction.setAttribute("base","xs:string");
-        restriction.appendChild(pattern);
-        simpleType.appendChild(restriction);
-        return simpleType;
-    }
-
-    private static Element mapStringEnumProperty(String key,JsonNode jsonNode,Document document){
-        Element element = document.createElement("xs:element");
-        Element simpleType = document.createElement("xs:simpleType");
-        Element restriction = document.createElement("xs:restriction");
-        restriction.setAttribute("base","xs:string");
-        simpleType.appendChild(restriction);
-        element.appendChild(simpleType);
-        element.setAttribute("name",key);
+        writer.endElement();
+        writer.endElement();
+    }
+
+    private static void createDateFormatRestriction(TemplateWriter writer){
+        writer.startElement("xs:simpleType");
+        writer.startElement("xs:restriction");
+        writer.attribute("base","xs:string");
+        writer.startElement("xs:pattern");
+        writer.attribute("value",DATE_FORMAT);
+        writer.endElement();
+        writer.endElement();
+        writer.endElement();
+    }
+
+    private static void mapStringEnumProperty(String key,JsonNode jsonNode,TemplateWriter writer){
+        writer.startElement("xs:element");
+        writer.attribute("name",key);
+        writer.startElement("xs:simpleType");
+        writer.startElement("xs:restriction");
+        writer.attribute("base","xs:string");
         ArrayNode enums = (ArrayNode) jsonNode.get("enum");
         enums.elements().forEachRemaining(elem ->{
-            Element enumeration = document.createElement("xs:enumeration");
-            enumeration.setAttribute("value",elem.asText());
-            restriction.appendChild(enumeration);
+            writer.startElement("xs:enumeration");
+            writer.attribute("value",elem.asText());
+            writer.endElement();
         });
-        return element;
+        writer.endElement();
+        writer.endElement();
+        writer.endElement();
     }
 
-    private static Element mapStringWithConditionsProperty(String key,JsonNode jsonNode,Document document){
-        Element element = document.createElement("xs:element");
-        Element simpleType = document.createElement("xs:simpleType");
-        Element restriction = document.createElement("xs:restriction");
-        restriction.setAttribute("base","xs:string");
-        simpleType.appendChild(restriction);
-        element.appendChild(simpleType);
-        element.setAttribute("name",key);
+    private static void mapStringWithConditionsProperty(String key,JsonNode jsonNode,TemplateWriter writer){
+        writer.startElement("xs:element");
+        writer.attribute("name",key);
+        writer.startElement("xs:simpleType");
+        writer.startElement("xs:restriction");
+        writer.attribute("base","xs:string");
         if(jsonNode.get("pattern") != null && !jsonNode.get("pattern").isNull()){
-            Element pattern = document.createElement("xs:pattern");
-            pattern.setAttribute("value",jsonNode.get("pattern").asText());
-            restriction.appendChild(pattern);
+            writer.startElement("xs:pattern");
+            writer.attribute("value",jsonNode.get("pattern").asText());
+            writer.endElement();
         }
         if(jsonNode.get("minLength") != null && !jsonNode.get("minLength").isNull()){
-            Element minLength = document.createElement("xs:minLength");
-            minLength.setAttribute("value",jsonNode.get("minLength").asText());
-            restriction.appendChild(minLength);
+            writer.startElement("xs:minLength");
+            writer.attribute("value",jsonNode.get("minLength").asText());
+            writer.endElement();
         }
         if(jsonNode.get("maxLength") != null && !jsonNode.get("maxLength").isNull()){
-            Element minLength = document.createElement("xs:maxLength");
-            minLength.setAttribute("value",jsonNode.get("maxLength").asText());
-            restriction.appendChild(minLength);
+            writer.startElement("xs:maxLength");
+            writer.attribute("value",jsonNode.get("maxLength").asText());
+            writer.endElement();
         }
-        return element;
+        writer.endElement();
+        writer.endElement();
+        writer.endElement();
     }
 
 }
@@ -0,0 +1,146 @@
+package com.upgrade.camp.mappers;
+
+import lombok.SneakyThrows;
+import org.w3c.dom.Document;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * writes the template straight to a stream with the same bytes a DOM serialization would give:
+ * same declaration, attributes sorted by name and escaped alike, childless elements written as empty ones.
+ * Only the start tag of the last opened element is held back, so memory does not grow with the template.
+ * A StAX writer can not be used here, it writes tabs and line breaks of attribute values raw where the
+ * DOM serializer writes character references, and parsers turn the raw ones into spaces.
+ * Element and attribute names are checked by a DOM document of its own, so a schema key that is no XML name
+ * fails with the same DOMException DomTemplateWriter throws; what was already flushed by then stays written
+ */
+final class StreamTemplateWriter implements TemplateWriter, AutoCloseable {
+
+    private static final String DECLARATION = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?>";
+
+    private final Writer writer;
+    private final Map<String, String> pendingAttributes = new TreeMap<>();
+    private final Deque<String> openElements = new ArrayDeque<>();
+    private final Document nameChecks = XmlDocuments.newDocument();
+    private final Set<String> elementNames = new HashSet<>();
+    private final Set<String> attributeNames = new HashSet<>();
+    private String pendingElement;
+
+    /**
+     * the stream is left open when the writer is closed
+     */
+    @SneakyThrows
+    StreamTemplateWriter(OutputStream output) {
+        writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+        writer.write(DECLARATION);
+    }
+
+    @Override
+    public void startElement(String name) {
+        if (!elementNames.contains(name)) {
+            nameChecks.createElement(name);
+            elementNames.add(name);
+        }
+        writePending(false);
+        pendingElement = name;
+    }
+
+    @Override
+    public void attribute(String name, String value) {
+        if (pendingElement == null) {
+            throw new IllegalStateException("Attribute " + name + " written after the children of its element");
+        }
+        if (!attributeNames.contains(name)) {
+            nameChecks.createAttribute(name);
+            attributeNames.add(name);
+        }
+        pendingAttributes.put(name, value);
+    }
+
+    @Override
+    @SneakyThrows
+    public void endElement() {
+        if (pendingElement != null) {
+            writePending(true);
+            return;
+        }
+        writer.write("</");
+        writer.write(openElements.pop());
+        writer.write('>');
+    }
+
+    @Override
+    @SneakyThrows
+    public void close() {
+        writer.flush();
+    }
+
+    @SneakyThrows
+    private void writePending(boolean empty) {
+        if (pendingElement == null) {
+            return;
+        }
+        writer.write('<');
+        writer.write(pendingElement);
+        for (Map.Entry<String, String> attribute : pendingAttributes.entrySet()) {
+            writer.write(' ');
+            writer.write(attribute.getKey());
+            writer.write("=\"");
+            writeEscaped(attribute.getValue());
+            writer.write('"');
+        }
+        if (empty) {
+            writer.write("/>");
+        } else {
+            writer.write('>');
+            openElements.push(pendingElement);
+        }
+        pendingElement = null;
+        pendingAttributes.clear();
+    }
+
+    /**
+     * same escaping the DOM serializer applies to attribute values
+     */
+    private void writeEscaped(String value) throws IOException {
+        for (int i = 0; i < value.length(); i++) {
+            char character = value.charAt(i);
+            switch (character) {
+                case '&':
+                    writer.write("&amp;");
+                    break;
+                case '<':
+                    writer.write("&lt;");
+                    break;
+                case '>':
+                    writer.write("&gt;");
+                    break;
+                case '"':
+                    writer.write("&quot;");
+                    break;
+                case '\t':
+                    writer.write("&#9;");
+                    break;
+                case '\n':
+                    writer.write("&#10;");
+                    break;
+                case '\r':
+                    writer.write("&#13;");
+                    break;
+                default:
+                    writer.write(character);
+            }
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.upgrade.camp.mappers;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import static com.fasterxml.jackson.databind.node.JsonNodeFactory.instance;
+
+/**
+ * transforms documents read from a {@link JsonParser} into a {@link JsonGenerator} with the same maps as
+ * {@link ObjectTransformer}. Only the top level properties read by the map are buffered, everything else
+ * in the source is skipped while parsing, so large documents and NDJSON files never sit in heap as a whole.
+ * The target of a single document is still built as a tree before being written because map lines may
+ * write the same target property several times, the last one winning
+ */
+@Slf4j
+public class StreamingObjectTransformer {
+
+    static final ObjectMapper OBJECT_MAPPER = new ObjectMapper()
+            .configure(JsonParser.Feature.AUTO_CLOSE_SOURCE, false)
+            .configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false);
+    static final SerializedString NEW_LINE = new SerializedString("\n");
+
+    private final ObjectTransformer objectTransformer;
+
+    public StreamingObjectTransformer() {
+        this(new ObjectTransformer());
+    }
+
+    /**
+     * @param objectTransformer whose compiled maps are shared
+     */
+    public StreamingObjectTransformer(ObjectTransformer objectTransformer) {
+        this.objectTransformer = objectTransformer;
+    }
+
+    /**
+     * reads the next document of the parser and writes its transformation
+     */
+    public void transformIntoFormat(String objectApiName, JsonParser source, JsonGenerator target) throws IOException {
+        transformIntoFormat(objectTransformer.planFor(objectApiName), source, target);
+    }
+
+    /**
+     * transforms a newline delimited JSON stream one record at a time, neither stream is closed
+     * @return quantity of records transformed
+     */
+    public long transformEachIntoFormat(String objectApiName, InputStream source, OutputStream target) throws IOException {
+        TransformationPlan plan = objectTransformer.planFor(objectApiName);
+        long records = 0;
+        try (JsonParser parser = OBJECT_MAPPER.getFactory().createParser(source);
+             JsonGenerator generator = OBJECT_MAPPER.getFactory().createGenerator(target)) {
+            generator.setRootValueSeparator(NEW_LINE);
+            while (parser.nextToken() != null) {
+                transformIntoFormat(plan, parser, generator);
+                records++;
+            }
+            if (records > 0) {
+                generator.writeRaw(NEW_LINE.getValue());
+            }
+        }
+        log.debug("message=\"Stream transformation for {} ended\", records={}", objectApiName, records);
+        return records;
+    }
+
+    private void transformIntoFormat(TransformationPlan plan, JsonParser source, JsonGenerator target) throws IOException {
+        JsonNode neededSource = readNeededProperties(plan, source);
+        OBJECT_MAPPER.writeTree(target, objectTransformer.transform(plan, neededSource));
+    }
+
+    /**
+     * reads the next document of the parser keeping only the top level properties the plan reads
+     */
+    static ObjectNode readNeededProperties(TransformationPlan plan, JsonParser source) throws IOException {
+        JsonToken token = source.currentToken() == null ? source.nextToken() : source.currentToken();
+        if (token != JsonToken.START_OBJECT) {
+            throw new IllegalArgumentException("Expected a JSON object but found " + token);
+        }
+        ObjectNode neededSource = instance.objectNode();
+        while (source.nextToken() == JsonToken.FIELD_NAME) {
+            String property = source.getCurrentName();
+            source.nextToken();
+            if (plan.getSourceRoots().contains(property)) {
+                neededSource.set(property, OBJECT_MAPPER.readTree(source));
+            } else {
+                source.skipChildren();
+            }
+        }
+        return neededSource;
+    }
+}
@@ -0,0 +1,87 @@
+package com.upgrade.camp.mappers;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Funnel;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import com.google.common.hash.PrimitiveSink;
+import org.w3c.dom.Document;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * templates already generated, keyed by a fingerprint of the schema they come from.
+ * Callers always get their own copy, so they are free to change it
+ */
+final class TemplateCache {
+
+    private static final HashFunction FINGERPRINT = Hashing.sha256();
+
+    private final Cache<HashCode, Document> templates;
+
+    TemplateCache(long maximumSize) {
+        templates = CacheBuilder.newBuilder().maximumSize(maximumSize).build();
+    }
+
+    /**
+     * a schema generated twice at the same time is harmless, the last one stays cached
+     */
+    Document get(JsonNode schema, Function<JsonNode, Document> generator) {
+        HashCode fingerprint = fingerprint(schema);
+        Document template = templates.getIfPresent(fingerprint);
+        if (template == null) {
+            template = generator.apply(schema);
+            templates.put(fingerprint, template);
+        }
+        return copyOf(template);
+    }
+
+    /**
+     * hashed straight from the tree, order of properties included since it is the order of the template
+     */
+    static HashCode fingerprint(JsonNode schema) {
+        return FINGERPRINT.hashObject(schema, SchemaFunnel.INSTANCE);
+    }
+
+    /**
+     * DOM reads are not thread safe either, a cached template is cloned by one thread at a time
+     */
+    private static Document copyOf(Document template) {
+        synchronized (template) {
+            return (Document) template.cloneNode(true);
+        }
+    }
+
+    private enum SchemaFunnel implements Funnel<JsonNode> {
+        INSTANCE;
+
+        @Override
+        public void funnel(JsonNode node, PrimitiveSink into) {
+            into.putInt(node.getNodeType().ordinal());
+            if (node.isObject()) {
+                into.putInt(node.size());
+                Iterator<Map.Entry<String, JsonNode>> fields = node.fields();
+                while (fields.hasNext()) {
+                    Map.Entry<String, JsonNode> field = fields.next();
+                    putString(field.getKey(), into);
+                    funnel(field.getValue(), into);
+                }
+            } else if (node.isArray()) {
+                into.putInt(node.size());
+                node.forEach(element -> funnel(element, into));
+            } else {
+                putString(node.asText(), into);
+            }
+        }
+
+        private static void putString(String value, PrimitiveSink into) {
+            into.putInt(value.length()).putString(value, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.upgrade.camp.mappers;
+
+/**
+ * receives a template in document order, attributes of an element come before its children
+ */
+interface TemplateWriter {
+
+    void startElement(String name);
+
+    void attribute(String name, String value);
+
+    void endElement();
+}
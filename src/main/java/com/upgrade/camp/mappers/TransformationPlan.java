@@ -0,0 +1,49 @@
+package com.upgrade.camp.mappers;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * transformation map compiled once, transforming a document only runs through its mappings
+ */
+@Getter(AccessLevel.PACKAGE)
+final class TransformationPlan {
+
+    private final String objectApiName;
+    private final List<PropertyMapping> mappings;
+    /**
+     * top level properties of the source read by any mapping, the rest of a document can be skipped
+     */
+    private final Set<String> sourceRoots;
+    /**
+     * null unless the plan was compiled into code
+     */
+    private final CompiledMapper mapper;
+
+    private TransformationPlan(String objectApiName, List<PropertyMapping> mappings, Set<String> sourceRoots, CompiledMapper mapper) {
+        this.objectApiName = objectApiName;
+        this.mappings = mappings;
+        this.sourceRoots = sourceRoots;
+        this.mapper = mapper;
+    }
+
+    static TransformationPlan compile(String objectApiName, List<String> lines) {
+        ImmutableList.Builder<PropertyMapping> mappings = ImmutableList.builder();
+        ImmutableSet.Builder<String> sourceRoots = ImmutableSet.builder();
+        lines.forEach(line -> {
+            PropertyMapping mapping = PropertyMapping.compile(line);
+            mappings.add(mapping);
+            sourceRoots.add(mapping.getSourcePath()[0]);
+        });
+        return new TransformationPlan(objectApiName, mappings.build(), sourceRoots.build(), null);
+    }
+
+    TransformationPlan withMapper(CompiledMapper mapper) {
+        return new TransformationPlan(objectApiName, mappings, sourceRoots, mapper);
+    }
+}
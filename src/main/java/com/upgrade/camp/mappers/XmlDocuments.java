@@ -0,0 +1,36 @@
+package com.upgrade.camp.mappers;
+
+import org.w3c.dom.Document;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
+/**
+ * document builders are not thread safe but cheap to keep, so each thread keeps its own instead of
+ * looking up and configuring a factory and a builder for every template
+ */
+final class XmlDocuments {
+
+    private static final DocumentBuilderFactory FACTORY = DocumentBuilderFactory.newInstance();
+    private static final ThreadLocal<DocumentBuilder> DOCUMENT_BUILDER = ThreadLocal.withInitial(XmlDocuments::newDocumentBuilder);
+
+    private XmlDocuments() {}
+
+    static Document newDocument() {
+        return DOCUMENT_BUILDER.get().newDocument();
+    }
+
+    /**
+     * the factory is only guaranteed to be safe for a single thread at a time
+     */
+    private static DocumentBuilder newDocumentBuilder() {
+        synchronized (FACTORY) {
+            try {
+                return FACTORY.newDocumentBuilder();
+            } catch (ParserConfigurationException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.upgrade.camp.model;
+
+import java.util.BitSet;
+import java.util.function.LongConsumer;
+
+/**
+ * Free nights of an availability window as a bitset over its days, bit i standing for
+ * {@code window.getStartDay() + i}. Encoders walk it by offset instead of building a date per night.
+ */
+public class FreeDays {
+
+  private final Stay window;
+  private final BitSet free;
+
+  public FreeDays(Stay window){
+    this.window = window;
+    this.free = new BitSet(length(window));
+  }
+
+  public Stay getWindow(){
+    return window;
+  }
+
+  /**
+   * number of days in the window, free or not
+   */
+  public int length(){
+    return length(window);
+  }
+
+  public int count(){
+    return free.cardinality();
+  }
+
+  public void markFree(long day){
+    free.set(offsetOf(day));
+  }
+
+  public boolean isFree(int offset){
+    return free.get(offset);
+  }
+
+  /**
+   * @return offset of the first free day at or after {@code offset}, -1 when there is none
+   */
+  public int nextFree(int offset){
+    int next = free.nextSetBit(offset);
+    return next < length() ? next : -1;
+  }
+
+  /**
+   * @return offset of the first booked day at or after {@code offset}, the window length when there is none
+   */
+  public int nextBooked(int offset){
+    return Math.min(free.nextClearBit(offset),length());
+  }
+
+  public void forEachFreeDay(LongConsumer consumer){
+    for(int offset = free.nextSetBit(0); offset >= 0; offset = free.nextSetBit(offset + 1)){
+      consumer.accept(window.getStartDay() + offset);
+    }
+  }
+
+  private int offsetOf(long day){
+    if(!window.contains(day)){
+      throw new IllegalArgumentException("Day " + day + " out of window " + window);
+    }
+    return (int) (day - window.getStartDay());
+  }
+
+  private static int length(Stay window){
+    return (int) Math.max(0L,window.nights());
+  }
+}
@@ -1,6 +1,7 @@
 package com.upgrade.camp.model;
 
 import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.upgrade.camp.controller.request.ReservationRequest;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -10,9 +11,21 @@ import lombok.NoArgsConstructor;
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+import javax.persistence.Version;
 import java.time.LocalDateTime;
 
+/**
+ * The (END_DATE, START_DATE) index serves the overlap queries: past stays are most of the table,
+ * so the range on END_DATE is the selective one. The EMAIL index serves the lookups by guest.
+ * The production schema declares the same indexes in its migration scripts.
+ */
 @Entity(name = "RESERVATION")
+@Table(indexes = {
+    @Index(name = "IDX_RESERVATION_OVERLAP", columnList = "END_DATE, START_DATE"),
+    @Index(name = "IDX_RESERVATION_EMAIL", columnList = "EMAIL")
+})
 @Data
 @Builder
 @NoArgsConstructor
@@ -20,13 +33,13 @@ import java.time.LocalDateTime;
 public class Reservation {
 
   @Id
-  @Column(name = "UID",unique = true)
+  @Column(name = "UID")
   private String uid;
-  @Column(name = "START_DATE",unique = true)
+  @Column(name = "START_DATE")
   @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
   private LocalDateTime startDate;
   @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
-  @Column(name = "END_DATE",unique = true)
+  @Column(name = "END_DATE")
   private LocalDateTime endDate;
   @Column(name = "BOOKING_DATE")
   @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
@@ -35,11 +48,19 @@ public class Reservation {
   private String email;
   @Column(name = "FULL_NAME")
   private String fullName;
+  /**
+   * bumped by every update and checked by it, clients get it as the ETag of the reservation
+   */
+  @Version
+  @Column(name = "VERSION")
+  @JsonIgnore
+  private Long version;
 
   public void replaceWith(ReservationRequest reservationRequest){
+    Stay stay = Stay.between(reservationRequest.getStartDate(),reservationRequest.getEndDate());
     this.email = reservationRequest.getEmail();
-    this.startDate = reservationRequest.getStartDate();
-    this.endDate = reservationRequest.getEndDate();
+    this.startDate = stay.checkIn();
+    this.endDate = stay.checkOut();
     this.fullName = reservationRequest.getFullName();
   }
 
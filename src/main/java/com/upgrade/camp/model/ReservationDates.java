@@ -0,0 +1,19 @@
+package com.upgrade.camp.model;
+
+import lombok.Value;
+
+import java.time.LocalDateTime;
+
+/**
+ * The two columns of a reservation that decide which nights it holds, read without hydrating the entity.
+ */
+@Value
+public class ReservationDates {
+
+  LocalDateTime startDate;
+  LocalDateTime endDate;
+
+  public Stay toStay(){
+    return Stay.between(startDate,endDate);
+  }
+}
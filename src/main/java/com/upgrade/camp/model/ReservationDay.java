@@ -0,0 +1,46 @@
+package com.upgrade.camp.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.domain.Persistable;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+import java.time.LocalDate;
+
+/**
+ * One row per occupied night. The primary key on the day lets the database itself refuse
+ * a second booking for it, whatever application instance wrote the first one.
+ */
+@Entity(name = "RESERVATION_DAY")
+@Table(indexes = @Index(name = "IDX_RESERVATION_DAY_UID", columnList = "RESERVATION_UID"))
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReservationDay implements Persistable<LocalDate> {
+
+  @Id
+  @Column(name = "RESERVED_DAY")
+  private LocalDate day;
+  @Column(name = "RESERVATION_UID", nullable = false)
+  private String reservationUid;
+
+  @Override
+  public LocalDate getId(){
+    return day;
+  }
+
+  /**
+   * rows are only ever inserted, so the day must never be merged into an existing row
+   */
+  @Override
+  public boolean isNew(){
+    return true;
+  }
+}
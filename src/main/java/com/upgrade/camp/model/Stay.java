@@ -0,0 +1,67 @@
+package com.upgrade.camp.model;
+
+import lombok.Value;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+
+/**
+ * Nights of a stay as the half-open epoch day range [startDay, endDay): the night of the start
+ * day up to, but not including, the night of the end day. Booking rules, availability and overlaps
+ * are all worked out on these two longs, date-times only exist at the edges.
+ */
+@Value(staticConstructor = "of")
+public class Stay {
+
+  /**
+   * check in and check out are both at noon, the overlap query of the repository is half-open
+   * so a stay checking in when another checks out does not conflict with it
+   */
+  public static final LocalTime CHECK_IN_TIME = LocalTime.NOON;
+
+  long startDay;
+  long endDay;
+
+  public static Stay of(Reservation reservation){
+    return between(reservation.getStartDate(),reservation.getEndDate());
+  }
+
+  /**
+   * only the dates count, whatever the time of day
+   */
+  public static Stay between(LocalDateTime startDate, LocalDateTime endDate){
+    return of(startDate.toLocalDate().toEpochDay(),endDate.toLocalDate().toEpochDay());
+  }
+
+  public long nights(){
+    return endDay - startDay;
+  }
+
+  public boolean isEmpty(){
+    return endDay <= startDay;
+  }
+
+  public boolean contains(long day){
+    return startDay <= day && day < endDay;
+  }
+
+  public boolean overlaps(Stay other){
+    return startDay < other.endDay && other.startDay < endDay;
+  }
+
+  public LocalDateTime checkIn(){
+    return LocalDate.ofEpochDay(startDay).atTime(CHECK_IN_TIME);
+  }
+
+  public LocalDateTime checkOut(){
+    return LocalDate.ofEpochDay(endDay).atTime(CHECK_IN_TIME);
+  }
+
+  /**
+   * how a free night is reported to clients
+   */
+  public static LocalDateTime checkInOf(long day){
+    return LocalDate.ofEpochDay(day).atTime(CHECK_IN_TIME);
+  }
+}
@@ -0,0 +1,32 @@
+package com.upgrade.camp.repository;
+
+import com.upgrade.camp.model.ReservationDay;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+
+@Repository
+public interface ReservationDayRepository extends JpaRepository<ReservationDay,LocalDate> {
+
+  /**
+   * Only for Integration Test
+   */
+  @Transactional
+  @Modifying
+  @Query(value = "DELETE FROM RESERVATION_DAY",nativeQuery = true)
+  void truncate();
+
+  /**
+   * frees every day held by a reservation
+   * @param reservationUid
+   * @return number of days freed
+   */
+  @Modifying
+  @Query(value = "DELETE FROM RESERVATION_DAY d WHERE d.reservationUid = :reservationUid")
+  int deleteByReservationUid(@Param("reservationUid") String reservationUid);
+}
@@ -1,17 +1,23 @@
 package com.upgrade.camp.repository;
 
 import com.upgrade.camp.model.Reservation;
+import com.upgrade.camp.model.ReservationDates;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 
+import javax.persistence.QueryHint;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
+
 @Repository
 public interface ReservationRepository extends JpaRepository<Reservation,String> {
 
@@ -31,23 +37,31 @@ public interface ReservationRepository extends JpaRepository<Reservation,String>
   Optional<Reservation> findById(String id);
 
   /**
-   * check wether a given date overlaps with other reservations or not
+   * whether any reservation overlaps [startDate, endDate), including the ones enclosing it; a reservation
+   * checking out when the other checks in does not overlap. Stops at the first match, a single probe of
+   * the (END_DATE, START_DATE) index
    * @param startDate, endDate
-   * @return boolean
+   * @return true when any reservation overlaps [startDate, endDate)
    */
-  @Query(value = "SELECT COUNT(*) FROM RESERVATION r WHERE (START_DATE BETWEEN :startDate AND :endDate) OR (END_DATE BETWEEN :startDate AND :endDate)", nativeQuery = true)
-  Long countReservationThatOverlapsWith(@Param("startDate")LocalDateTime startDate, @Param("endDate") LocalDateTime endDate);
+  @Query(value = "SELECT CASE WHEN EXISTS (SELECT 1 FROM RESERVATION r WHERE r.END_DATE > :startDate AND r.START_DATE < :endDate) THEN TRUE ELSE FALSE END", nativeQuery = true)
+  boolean existsReservationThatOverlapsWith(@Param("startDate")LocalDateTime startDate, @Param("endDate") LocalDateTime endDate);
 
+  /**
+   * {@link #existsReservationThatOverlapsWith} leaving out the reservation itself, for updates
+   * @param uid, startDate, endDate
+   * @return true when any other reservation overlaps [startDate, endDate)
+   */
+  @Query(value = "SELECT CASE WHEN EXISTS (SELECT 1 FROM RESERVATION r WHERE r.END_DATE > :startDate AND r.START_DATE < :endDate AND r.UID <> :uid) THEN TRUE ELSE FALSE END", nativeQuery = true)
+  boolean existsOtherReservationThatOverlapsWith(@Param("uid") String uid, @Param("startDate")LocalDateTime startDate, @Param("endDate") LocalDateTime endDate);
 
   /**
-   * Obtains all reservation for two given dates
-   * @param startDate
-   * @param endDate
+   * dates of the reservations checking out after {@code since}, as plain values: no entity is
+   * hydrated nor kept in the persistence context, so there is nothing to dirty check either
+   * @param since
    * @return
-     */
-  @Query(value = "SELECT r FROM RESERVATION r WHERE (START_DATE BETWEEN :startDate AND :endDate) OR (END_DATE BETWEEN :startDate AND :endDate)")
-  List<Reservation> getAllReservationBetween(@Param("startDate")LocalDateTime startDate, @Param("endDate") LocalDateTime endDate);
-
-
-
+   */
+  @Transactional(readOnly = true)
+  @QueryHints({@QueryHint(name = HINT_READONLY, value = "true"), @QueryHint(name = HINT_FETCH_SIZE, value = "500")})
+  @Query(value = "SELECT new com.upgrade.camp.model.ReservationDates(r.startDate, r.endDate) FROM RESERVATION r WHERE r.endDate > :since")
+  List<ReservationDates> findDatesCheckingOutAfter(@Param("since") LocalDateTime since);
 }
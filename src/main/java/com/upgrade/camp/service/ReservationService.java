@@ -1,53 +1,121 @@
 package com.upgrade.camp.service;
 
+import com.upgrade.camp.datasource.ReadYourWrites;
+import com.upgrade.camp.guava.AvailabilitySnapshot;
+import com.upgrade.camp.guava.BlockAvailability;
 import com.upgrade.camp.guava.CacheKey;
 import com.upgrade.camp.model.Reservation;
+import com.upgrade.camp.model.ReservationDay;
+import com.upgrade.camp.model.Stay;
+import com.upgrade.camp.repository.ReservationDayRepository;
 import com.upgrade.camp.repository.ReservationRepository;
 import com.upgrade.camp.controller.request.ReservationRequest;
+import com.upgrade.camp.service.calendar.StayCalendar;
 import com.upgrade.camp.service.exception.AlreadyBookedException;
-import com.upgrade.camp.service.exception.ModelConstraintReservation;
 import com.upgrade.camp.service.exception.ReservationNotFoundException;
+import com.upgrade.camp.service.exception.StaleReservationException;
+import com.upgrade.camp.service.occupancy.DayOccupancyIndex;
+import com.upgrade.camp.service.validation.ReservationValidator;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.cache.LoadingCache;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
-import java.time.LocalDateTime;
+import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 import java.util.stream.Collectors;
-
-import static  java.time.temporal.ChronoUnit.DAYS;
+import java.util.stream.LongStream;
 
 @Service
 public class ReservationService {
 
-  private static final String EMAIL_REGEX = "^(.+)@(.+)$";
+  private static final String ALREADY_BOOKED = "Cannot book, due conflicts with other reservations";
+  private static final String STALE_RESERVATION = "Reservation was modified since it was read";
 
   @Autowired
   private ReservationRepository reservationRepository;
   @Autowired
-  private LoadingCache<CacheKey,List<LocalDateTime>> loadingCache;
+  private ReservationDayRepository reservationDayRepository;
+  @Autowired
+  private LoadingCache<CacheKey,BlockAvailability> loadingCache;
+  @Autowired
+  private DayOccupancyIndex occupancyIndex;
+  @Autowired
+  private ReservationValidator reservationValidator;
+  @Autowired
+  private StayCalendar stayCalendar;
+  @Autowired
+  private ReadYourWrites readYourWrites;
 
+  /**
+   * served by the replica when there is one, unless the reservation was just written here; what the replica
+   * does not have yet is looked up again on the primary
+   */
+  @Transactional(readOnly = true)
   public Reservation findById(String id){
-    return findReservation(id);
+    Optional<Reservation> reservation = readYourWrites.read(id,() -> reservationRepository.findById(id));
+    if(!reservation.isPresent()){
+      reservation = readYourWrites.readMissOnPrimary(() -> reservationRepository.findById(id));
+    }
+    return reservation.orElseThrow(() -> new ReservationNotFoundException("Reservation not found"));
   }
 
-  public List<LocalDateTime> findAvailability(LocalDateTime startDate, LocalDateTime endDate){
-    return loadingCache.getUnchecked(CacheKey.builder()
-                                             .startDate(startDate)
-                                             .endDate(endDate)
-                                             .build());
+  /**
+   * reads the cached blocks the window spans
+   */
+  public AvailabilitySnapshot findAvailability(Stay window){
+    List<CacheKey> keys = CacheKey.blocksBetween(window.getStartDay(),window.getEndDay());
+    List<BlockAvailability> blocks = new ArrayList<>(keys.size());
+    for(CacheKey key : keys){
+      blocks.add(loadingCache.getUnchecked(key));
+    }
+    return new AvailabilitySnapshot(window,keys,blocks);
+  }
+
+  /**
+   * reloads the occupancy index every camp.occupancy.refresh-interval, so what other instances booked, moved
+   * or cancelled shows up within it, and drops the cached blocks of every day it changed
+   */
+  @Scheduled(initialDelayString = "${camp.occupancy.refresh-interval:PT30S}", fixedDelayString = "${camp.occupancy.refresh-interval:PT30S}")
+  public void refreshOccupancy(){
+    for(Stay changed : occupancyIndex.reload()){
+      checkForDirtyValues(changed.getStartDay(),changed.getEndDay());
+    }
   }
 
   @Transactional
   public void createReservation(Reservation reservation){
     setUUIDAndBookingDate(reservation);
-    validateConstraintsToBook(reservation);
-    checkIfReservationOverlaps(reservation);
-    reservationRepository.save(reservation);
-    checkForDirtyValues(reservation);
+    reservationValidator.validate(reservation);
+    Stay stay = Stay.of(reservation);
+    long startDay = stay.getStartDay();
+    long endDay = stay.getEndDay();
+    claimDays(startDay,endDay);
+    try{
+      checkIfReservationOverlaps(reservation);
+      reservationRepository.save(reservation);
+      persistDays(reservation.getUid(),startDay,endDay);
+    }catch (RuntimeException e){
+      occupancyIndex.release(startDay,endDay);
+      checkForDirtyValues(startDay,endDay);
+      throw e;
+    }
+    afterCompletion(() -> {
+      readYourWrites.wrote(reservation.getUid());
+      checkForDirtyValues(startDay,endDay);
+    }, () -> {
+      occupancyIndex.release(startDay,endDay);
+      checkForDirtyValues(startDay,endDay);
+    });
   }
 
   @Transactional
@@ -56,22 +124,65 @@ public class ReservationService {
     if(reservation.isPresent()){
       checkOwnership(reservation.get(),email);
       reservationRepository.delete(reservation.get());
+      reservationDayRepository.deleteByReservationUid(id);
+      Stay stay = Stay.of(reservation.get());
+      long startDay = stay.getStartDay();
+      long endDay = stay.getEndDay();
+      afterCompletion(() -> {
+        readYourWrites.wrote(id);
+        occupancyIndex.release(startDay,endDay);
+        checkForDirtyValues(startDay,endDay);
+      }, () -> {});
       return;
     }
     throw new ReservationNotFoundException("Reservation not found");
   }
 
+  /**
+   * no row lock is taken: the UPDATE itself checks the version read, so of two concurrent updates the last
+   * one to flush fails instead of overwriting the other
+   * @param expectedVersion version the caller read, null to update whatever is stored
+   */
   @Transactional
-  public Reservation updateReservation(ReservationRequest reservationRequest, String id){
-    Reservation reservation = findById(id);
+  public Reservation updateReservation(ReservationRequest reservationRequest, String id, Long expectedVersion){
+    Reservation reservation = findReservation(id);
+    if(expectedVersion != null && !expectedVersion.equals(reservation.getVersion())){
+      throw new StaleReservationException(STALE_RESERVATION);
+    }
+    Stay previous = Stay.of(reservation);
+    long previousStartDay = previous.getStartDay();
+    long previousEndDay = previous.getEndDay();
+    reservation.replaceWith(reservationRequest);
+    reservationValidator.validate(reservation);
+    Stay stay = Stay.of(reservation);
+    long startDay = stay.getStartDay();
+    long endDay = stay.getEndDay();
+    claimDays(startDay,endDay,previousStartDay,previousEndDay);
+    Reservation updated;
     try{
-      reservation.replaceWith(reservationRequest);
-      validateConstraintsToBook(reservation);
-      checkIfReservationOverlaps(reservation);
-      return reservationRepository.save(reservation);
-    }finally {
-      checkForDirtyValues(reservation);
+      checkIfOtherReservationOverlaps(reservation);
+      updated = reservationRepository.save(reservation);
+      reservationDayRepository.deleteByReservationUid(id);
+      persistDays(id,startDay,endDay);
+    }catch (OptimisticLockingFailureException e){
+      occupancyIndex.release(startDay,endDay,previousStartDay,previousEndDay);
+      checkForDirtyValues(startDay,endDay);
+      throw new StaleReservationException(STALE_RESERVATION);
+    }catch (RuntimeException e){
+      occupancyIndex.release(startDay,endDay,previousStartDay,previousEndDay);
+      checkForDirtyValues(startDay,endDay);
+      throw e;
     }
+    afterCompletion(() -> {
+      readYourWrites.wrote(id);
+      occupancyIndex.release(previousStartDay,previousEndDay,startDay,endDay);
+      checkForDirtyValues(previousStartDay,previousEndDay);
+      checkForDirtyValues(startDay,endDay);
+    }, () -> {
+      occupancyIndex.release(startDay,endDay,previousStartDay,previousEndDay);
+      checkForDirtyValues(startDay,endDay);
+    });
+    return updated;
   }
 
   private Reservation findReservation(String id){
@@ -85,7 +196,7 @@ public class ReservationService {
   private void setUUIDAndBookingDate(Reservation reservation){
     String uuid = UUID.randomUUID().toString();
     reservation.setUid(uuid);
-    reservation.setBookingDate(LocalDateTime.now());
+    reservation.setBookingDate(stayCalendar.now());
   }
 
   private void checkOwnership(Reservation reservation,String email){
@@ -94,42 +205,83 @@ public class ReservationService {
     }
   }
 
-  private void validateConstraintsToBook(Reservation reservation){
-    if(!reservation.getEmail().matches(EMAIL_REGEX)){
-      throw new ModelConstraintReservation("Not a valid Email");
-    }
-    if((DAYS.between(reservation.getStartDate(),reservation.getEndDate())) > 3){
-      throw new ModelConstraintReservation("Camp reservation days cannot be greater than 3 days");
-    }
-    if(DAYS.between(LocalDateTime.now(),reservation.getStartDate()) > 30){
-      throw new ModelConstraintReservation("Camp cannot be booked more than 30 days in advance");
+  private void checkIfReservationOverlaps(Reservation reservation){
+    if(reservationRepository.existsReservationThatOverlapsWith(reservation.getStartDate(),reservation.getEndDate())){
+      throw new AlreadyBookedException(ALREADY_BOOKED);
     }
-    LocalDateTime today = LocalDateTime.now().withHour(12).withMinute(0).withSecond(01).withNano(0);
-    if(DAYS.between(today,reservation.getStartDate()) < 1){
-      throw new ModelConstraintReservation("Camp cannot be booked for the same day");
+  }
+
+  private void checkIfOtherReservationOverlaps(Reservation reservation){
+    if(reservationRepository.existsOtherReservationThatOverlapsWith(reservation.getUid(),reservation.getStartDate(),reservation.getEndDate())){
+      throw new AlreadyBookedException(ALREADY_BOOKED);
     }
-    if(reservation.getEndDate().isBefore(reservation.getStartDate())){
-      throw new ModelConstraintReservation("End Date should be bigger than Start Date");
+  }
+
+  /**
+   * writes one RESERVATION_DAY row per night in the booking transaction; the primary key on
+   * the day is what keeps two application instances from booking the same night
+   */
+  private void persistDays(String reservationUid, long startDay, long endDay){
+    List<ReservationDay> days = LongStream.range(startDay,endDay)
+            .mapToObj(day -> ReservationDay.builder()
+                                           .day(LocalDate.ofEpochDay(day))
+                                           .reservationUid(reservationUid)
+                                           .build())
+            .collect(Collectors.toList());
+    try{
+      reservationDayRepository.saveAll(days);
+      reservationDayRepository.flush();
+    }catch (DataIntegrityViolationException e){
+      throw new AlreadyBookedException(ALREADY_BOOKED);
     }
   }
 
-  private void checkIfReservationOverlaps(Reservation reservation){
-    if(reservationRepository.countReservationThatOverlapsWith(reservation.getStartDate(),reservation.getEndDate()) >= 1){
-      throw new AlreadyBookedException("Cannot book, due conflicts with other reservations");
+  @VisibleForTesting
+  void checkForDirtyValues(long startDay, long endDay){
+    loadingCache.invalidateAll(CacheKey.blocksBetween(startDay,endDay));
+  }
+
+  /**
+   * takes the days in the occupancy index before anything is written, so overlapping bookings are turned
+   * down right away instead of waiting on the lock of another booking's uncommitted RESERVATION_DAY rows.
+   * the RESERVATION_DAY insert still decides between instances; the index learns their bookings at its
+   * next reload. Days given back when the booking fails have their blocks invalidated after, a load in
+   * between may have cached them as taken
+   */
+  private void claimDays(long startDay, long endDay){
+    if(!occupancyIndex.tryClaim(startDay,endDay)){
+      throw new AlreadyBookedException(ALREADY_BOOKED);
     }
   }
 
-  private void checkForDirtyValues(Reservation reservation){
-   List<CacheKey> keys = loadingCache.asMap().keySet().stream().filter( key -> {
-     return loadingCache.getUnchecked(key).stream().anyMatch(date ->{
-                     return  dateBetween(date, reservation.getStartDate(), reservation.getEndDate());
-     });
-   }).collect(Collectors.toList());
-   loadingCache.invalidateAll(keys);
+  /**
+   * as {@link #claimDays(long, long)}, leaving out the days the reservation already holds
+   */
+  private void claimDays(long startDay, long endDay, long ownedStartDay, long ownedEndDay){
+    if(!occupancyIndex.tryClaim(startDay,endDay,ownedStartDay,ownedEndDay)){
+      throw new AlreadyBookedException(ALREADY_BOOKED);
+    }
   }
 
-  private Boolean dateBetween(LocalDateTime target, LocalDateTime start, LocalDateTime end){
-    return target.isAfter(start) && target.isBefore(end);
+  /**
+   * claimed days are held until the surrounding transaction completes and given back if it
+   * rolls back; without a transaction the commit action runs right away
+   */
+  private void afterCompletion(Runnable onCommit, Runnable onRollback){
+    if(!TransactionSynchronizationManager.isSynchronizationActive()){
+      onCommit.run();
+      return;
+    }
+    TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+      @Override
+      public void afterCompletion(int status) {
+        if(status == STATUS_COMMITTED){
+          onCommit.run();
+          return;
+        }
+        onRollback.run();
+      }
+    });
   }
 
 }
@@ -0,0 +1,44 @@
+package com.upgrade.camp.service.calendar;
+
+import com.upgrade.camp.model.Stay;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * The only place the current time is read. Everything else gets today as an epoch day from here,
+ * so swapping the clock bean moves the whole application in time.
+ */
+@Component
+public class StayCalendar {
+
+  private static final int DEFAULT_WINDOW_DAYS = 30;
+  private static final long SECONDS_PER_DAY = 86_400L;
+
+  @Autowired
+  private Clock clock;
+
+  public long today(){
+    Instant instant = clock.instant();
+    long localSecond = instant.getEpochSecond() + clock.getZone().getRules().getOffset(instant).getTotalSeconds();
+    return Math.floorDiv(localSecond,SECONDS_PER_DAY);
+  }
+
+  public LocalDateTime now(){
+    return LocalDateTime.now(clock);
+  }
+
+  /**
+   * nights after {@code startDate} up to the night of {@code endDate} included; from today and a month long
+   * when the dates are missing
+   */
+  public Stay availabilityWindow(LocalDate startDate, LocalDate endDate){
+    long startDay = startDate == null ? today() : startDate.toEpochDay();
+    long endDay = endDate == null ? startDay + DEFAULT_WINDOW_DAYS : endDate.toEpochDay();
+    return Stay.of(startDay + 1,endDay + 1);
+  }
+}
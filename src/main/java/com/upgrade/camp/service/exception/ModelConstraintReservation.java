@@ -1,8 +1,26 @@
 package com.upgrade.camp.service.exception;
 
+import java.util.Collections;
+import java.util.List;
+
 public class ModelConstraintReservation extends  RuntimeException{
 
+  private final List<String> violations;
+
   public ModelConstraintReservation(String msg){
     super(msg);
+    violations = Collections.singletonList(msg);
+  }
+
+  /**
+   * @param violations every broken constraint, joined into the message
+   */
+  public ModelConstraintReservation(List<String> violations){
+    super(String.join(". ",violations));
+    this.violations = Collections.unmodifiableList(violations);
+  }
+
+  public List<String> getViolations(){
+    return violations;
   }
 }
@@ -0,0 +1,11 @@
+package com.upgrade.camp.service.exception;
+
+/**
+ * the reservation changed since the version the caller read
+ */
+public class StaleReservationException extends RuntimeException {
+
+  public StaleReservationException(String msg){
+    super(msg);
+  }
+}
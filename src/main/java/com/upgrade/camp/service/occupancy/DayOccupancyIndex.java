@@ -0,0 +1,263 @@
+package com.upgrade.camp.service.occupancy;
+
+import com.upgrade.camp.datasource.ReadYourWrites;
+import com.upgrade.camp.model.Stay;
+import com.upgrade.camp.model.ReservationDates;
+import com.upgrade.camp.repository.ReservationRepository;
+import com.upgrade.camp.service.calendar.StayCalendar;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongConsumer;
+
+/**
+ * In-memory bitset of occupied nights keyed by epoch day.
+ * A reservation occupies the half-open range [startDay, endDay): the night of the
+ * start day up to, but not including, the night of the end day.
+ * Reads are lock-free, so availability never goes to the database, and bookings claim
+ * their days with compare-and-set on the 64-day word holding them: bookings on different
+ * words never touch each other and bookings on the same word only retry, nobody blocks.
+ */
+@Component
+@Slf4j
+public class DayOccupancyIndex {
+
+  /**
+   * 2^16 epoch days reach the year 2149, 8KB of words
+   */
+  private static final int CAPACITY = 1 << 16;
+  private static final int WORD_SHIFT = 6;
+  private static final int WORD_MASK = 63;
+  private static final long ALL_ONES = -1L;
+
+  private final AtomicLongArray words = new AtomicLongArray(CAPACITY >>> WORD_SHIFT);
+
+  @Autowired
+  private ReservationRepository reservationRepository;
+  @Autowired
+  private StayCalendar stayCalendar;
+  @Autowired
+  private ReadYourWrites readYourWrites;
+
+  @PostConstruct
+  public void load(){
+    reload();
+  }
+
+  /**
+   * reads the stored reservations again so what other instances booked, moved or cancelled shows up.
+   * only the dates of the stays still to check out are read, nights already gone can never be
+   * booked nor asked for again. Always read from the primary: claims are checked against this index, a
+   * replica trailing behind would hand out days just booked.
+   * the words are captured before the query and the stored days merged in with compare-and-set, so the
+   * bits claimed, occupied or released here while the query ran are kept as they are now
+   * @return the days of every word the reload changed
+   */
+  public List<Stay> reload(){
+    long[] before = new long[words.length()];
+    for(int i = 0; i < before.length; i++){
+      before[i] = words.get(i);
+    }
+    long[] loaded = new long[words.length()];
+    LocalDateTime since = Stay.checkInOf(stayCalendar.today());
+    for(ReservationDates dates : readYourWrites.onPrimary(() -> reservationRepository.findDatesCheckingOutAfter(since))){
+      Stay stay = dates.toStay();
+      checkRange(stay.getStartDay(),stay.getEndDay());
+      for(long day = stay.getStartDay(); day < stay.getEndDay(); day = nextWordStart(day)){
+        loaded[wordIndex(day)] |= wordMask(day,stay.getEndDay());
+      }
+    }
+    List<Stay> changed = new ArrayList<>();
+    for(int i = 0; i < loaded.length; i++){
+      long word;
+      long merged;
+      do{
+        word = words.get(i);
+        long changedMeanwhile = word ^ before[i];
+        merged = (loaded[i] & ~changedMeanwhile) | (word & changedMeanwhile);
+      }while(word != merged && !words.compareAndSet(i,word,merged));
+      if(word != merged){
+        long wordStart = (long) i << WORD_SHIFT;
+        changed.add(Stay.of(wordStart,wordStart + WORD_MASK + 1));
+      }
+    }
+    log.info("message=\"Occupancy index loaded\", occupiedDays={}, changedWords={}", countOccupied(), changed.size());
+    return changed;
+  }
+
+  public void occupy(long startDay, long endDay){
+    checkRange(startDay,endDay);
+    for(long day = startDay; day < endDay; day = nextWordStart(day)){
+      int index = wordIndex(day);
+      long mask = wordMask(day,endDay);
+      long word;
+      do{
+        word = words.get(index);
+      }while(!words.compareAndSet(index,word,word | mask));
+    }
+  }
+
+  public void release(long startDay, long endDay){
+    checkRange(startDay,endDay);
+    for(long day = startDay; day < endDay; day = nextWordStart(day)){
+      int index = wordIndex(day);
+      long mask = wordMask(day,endDay);
+      long word;
+      do{
+        word = words.get(index);
+      }while(!words.compareAndSet(index,word,word & ~mask));
+    }
+  }
+
+  /**
+   * atomically occupies [startDay, endDay) only if every day of it is free.
+   * words are claimed in ascending order and the ones already taken are given back on conflict
+   * @return false when any day was already occupied, leaving the index untouched
+   */
+  public boolean tryClaim(long startDay, long endDay){
+    checkRange(startDay,endDay);
+    for(long day = startDay; day < endDay; day = nextWordStart(day)){
+      if(!claimWord(wordIndex(day),wordMask(day,endDay))){
+        release(startDay,day);
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * claims [startDay, endDay) except for the days of [ownedStartDay, ownedEndDay) the caller already holds
+   */
+  public boolean tryClaim(long startDay, long endDay, long ownedStartDay, long ownedEndDay){
+    long headEnd = headEnd(startDay,endDay,ownedStartDay);
+    long tailStart = tailStart(startDay,endDay,ownedEndDay);
+    if(!tryClaim(startDay,headEnd)){
+      return false;
+    }
+    if(!tryClaim(tailStart,endDay)){
+      release(startDay,headEnd);
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * releases [startDay, endDay) except for the days of [keptStartDay, keptEndDay)
+   */
+  public void release(long startDay, long endDay, long keptStartDay, long keptEndDay){
+    release(startDay,headEnd(startDay,endDay,keptStartDay));
+    release(tailStart(startDay,endDay,keptEndDay),endDay);
+  }
+
+  public boolean isOccupied(long day){
+    return inRange(day) && (words.get(wordIndex(day)) & bit(day)) != 0;
+  }
+
+  /**
+   * scans [startDay, endDay) one word at a time and hands every free day to the consumer, in order.
+   * days outside the index capacity cannot hold a reservation, so they are reported as free
+   */
+  public void forEachFreeDay(long startDay, long endDay, LongConsumer consumer){
+    long day = startDay;
+    while(day < endDay){
+      if(!inRange(day)){
+        consumer.accept(day++);
+        continue;
+      }
+      long wordStart = day & ~WORD_MASK;
+      long free = ~words.get(wordIndex(day)) & wordMask(day,endDay);
+      while(free != 0){
+        consumer.accept(wordStart + Long.numberOfTrailingZeros(free));
+        free &= free - 1;
+      }
+      day = nextWordStart(day);
+    }
+  }
+
+  /**
+   * free days of [startDay, endDay) as a bitmask, bit i standing for startDay + i, so at most 64 days.
+   * as in {@link #forEachFreeDay} days outside the index capacity are free
+   */
+  public long freeMask(long startDay, long endDay){
+    if(endDay - startDay > WORD_MASK + 1){
+      throw new IllegalArgumentException("At most 64 days fit in a mask: " + startDay + " - " + endDay);
+    }
+    long mask = 0L;
+    for(long day = startDay; day < endDay; day = nextWordStart(day)){
+      long free = wordMask(day,endDay);
+      if(inRange(day)){
+        free &= ~words.get(wordIndex(day));
+      }
+      long shift = (day & ~WORD_MASK) - startDay;
+      mask |= shift >= 0 ? free << shift : free >>> -shift;
+    }
+    return mask;
+  }
+
+  private boolean claimWord(int index, long mask){
+    long word;
+    do{
+      word = words.get(index);
+      if((word & mask) != 0){
+        return false;
+      }
+    }while(!words.compareAndSet(index,word,word | mask));
+    return true;
+  }
+
+  private long countOccupied(){
+    long count = 0;
+    for(int i = 0; i < words.length(); i++){
+      count += Long.bitCount(words.get(i));
+    }
+    return count;
+  }
+
+  private void checkRange(long startDay, long endDay){
+    if(startDay < endDay && (startDay < 0 || endDay > CAPACITY)){
+      throw new IllegalArgumentException("Days out of occupancy index range: " + startDay + " - " + endDay);
+    }
+  }
+
+  private static long headEnd(long startDay, long endDay, long excludedStartDay){
+    return Math.max(startDay,Math.min(endDay,excludedStartDay));
+  }
+
+  private static long tailStart(long startDay, long endDay, long excludedEndDay){
+    return Math.min(endDay,Math.max(startDay,excludedEndDay));
+  }
+
+  /**
+   * bits of the word holding {@code day} that lie in [day, endDay)
+   */
+  private static long wordMask(long day, long endDay){
+    long wordStart = day & ~WORD_MASK;
+    long mask = ALL_ONES << (day & WORD_MASK);
+    if(endDay - wordStart <= WORD_MASK){
+      mask &= ~(ALL_ONES << (endDay - wordStart));
+    }
+    return mask;
+  }
+
+  private static long nextWordStart(long day){
+    return (day & ~WORD_MASK) + WORD_MASK + 1;
+  }
+
+  private static boolean inRange(long day){
+    return day >= 0 && day < CAPACITY;
+  }
+
+  private static int wordIndex(long day){
+    return (int) (day >>> WORD_SHIFT);
+  }
+
+  private static long bit(long day){
+    return 1L << (day & WORD_MASK);
+  }
+}
@@ -0,0 +1,77 @@
+package com.upgrade.camp.service.validation;
+
+import com.upgrade.camp.model.Reservation;
+import com.upgrade.camp.model.Stay;
+import com.upgrade.camp.service.calendar.StayCalendar;
+import com.upgrade.camp.service.exception.ModelConstraintReservation;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Checks the booking rules of a reservation. Stateless: the email pattern is compiled once and
+ * today is read a single time per validation, every rule then compares epoch days of the stay
+ * so a valid reservation goes through without building any date or string
+ */
+@Component
+public class ReservationValidator {
+
+  private static final Pattern EMAIL = Pattern.compile("^(.+)@(.+)$");
+  private static final int MAX_NIGHTS = 3;
+  private static final int MAX_DAYS_IN_ADVANCE = 30;
+
+  static final String INVALID_EMAIL = "Not a valid Email";
+  static final String STAY_TOO_LONG = "Camp reservation days cannot be greater than 3 days";
+  static final String TOO_FAR_IN_ADVANCE = "Camp cannot be booked more than 30 days in advance";
+  static final String SAME_DAY = "Camp cannot be booked for the same day";
+  static final String END_BEFORE_START = "End Date should be bigger than Start Date";
+
+  @Autowired
+  private StayCalendar stayCalendar;
+
+  /**
+   * @throws ModelConstraintReservation holding every rule the reservation breaks
+   */
+  public void validate(Reservation reservation){
+    List<String> violations = findViolations(reservation);
+    if(!violations.isEmpty()){
+      throw new ModelConstraintReservation(violations);
+    }
+  }
+
+  /**
+   * @return messages of the rules the reservation breaks, in the order they are checked; empty when valid
+   */
+  public List<String> findViolations(Reservation reservation){
+    long today = stayCalendar.today();
+    Stay stay = Stay.of(reservation);
+
+    List<String> violations = Collections.emptyList();
+    if(!EMAIL.matcher(reservation.getEmail()).matches()){
+      violations = add(violations,INVALID_EMAIL);
+    }
+    if(stay.nights() > MAX_NIGHTS){
+      violations = add(violations,STAY_TOO_LONG);
+    }
+    if(stay.getStartDay() - today > MAX_DAYS_IN_ADVANCE){
+      violations = add(violations,TOO_FAR_IN_ADVANCE);
+    }
+    if(stay.getStartDay() <= today){
+      violations = add(violations,SAME_DAY);
+    }
+    if(stay.isEmpty()){
+      violations = add(violations,END_BEFORE_START);
+    }
+    return violations;
+  }
+
+  private static List<String> add(List<String> violations, String violation){
+    List<String> added = violations.isEmpty() ? new ArrayList<>(2) : violations;
+    added.add(violation);
+    return added;
+  }
+}
@@ -0,0 +1,19 @@
+-- V1: reservations and the nights they hold, written idempotently since it runs on every start-up
+CREATE TABLE IF NOT EXISTS RESERVATION (
+  UID VARCHAR(255) NOT NULL,
+  START_DATE TIMESTAMP,
+  END_DATE TIMESTAMP,
+  BOOKING_DATE TIMESTAMP,
+  EMAIL VARCHAR(255),
+  FULL_NAME VARCHAR(255),
+  CONSTRAINT PK_RESERVATION PRIMARY KEY (UID)
+);
+CREATE INDEX IF NOT EXISTS IDX_RESERVATION_DATES ON RESERVATION (START_DATE, END_DATE);
+CREATE INDEX IF NOT EXISTS IDX_RESERVATION_EMAIL ON RESERVATION (EMAIL);
+
+CREATE TABLE IF NOT EXISTS RESERVATION_DAY (
+  RESERVED_DAY DATE NOT NULL,
+  RESERVATION_UID VARCHAR(255) NOT NULL,
+  CONSTRAINT PK_RESERVATION_DAY PRIMARY KEY (RESERVED_DAY)
+);
+CREATE INDEX IF NOT EXISTS IDX_RESERVATION_DAY_UID ON RESERVATION_DAY (RESERVATION_UID);
@@ -0,0 +1,3 @@
+-- V2: the overlap query is END_DATE > :start AND START_DATE < :end, lead the index with END_DATE
+DROP INDEX IF EXISTS IDX_RESERVATION_DATES;
+CREATE INDEX IF NOT EXISTS IDX_RESERVATION_OVERLAP ON RESERVATION (END_DATE, START_DATE);
@@ -0,0 +1,2 @@
+-- V3: optimistic locking, existing reservations start at version 0
+ALTER TABLE RESERVATION ADD COLUMN IF NOT EXISTS VERSION BIGINT DEFAULT 0 NOT NULL;
@@ -5,6 +5,7 @@ import com.upgrade.camp.controller.exception.BadRequestException;
 import com.upgrade.camp.controller.response.ReservationResponse;
 import com.upgrade.camp.service.exception.ModelConstraintReservation;
 import com.upgrade.camp.service.exception.ReservationNotFoundException;
+import com.upgrade.camp.service.exception.StaleReservationException;
 import org.hibernate.exception.ConstraintViolationException;
 import org.junit.Before;
 import org.junit.Test;
@@ -12,6 +13,7 @@ import org.junit.runner.RunWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 
 import static org.hamcrest.CoreMatchers.nullValue;
@@ -24,6 +26,7 @@ public class ExceptionHandlerControllerTest {
 
   private static final String BAD_REQUEST_EX = "bad request exception";
   private static final String RESERVATION_NOT_FOUND_EX = "reservation not found";
+  private static final String STALE_EX = "stale reservation";
   private static final String CONSTRAINT_EX_PRETTY = "Cannot book, due conflicts with other reservations";
 
   @Mock
@@ -61,6 +64,13 @@ public class ExceptionHandlerControllerTest {
     assertsOn(response,RESERVATION_NOT_FOUND_EX);
   }
 
+  @Test
+  public void testHandleStaleReservation(){
+    ResponseEntity<ReservationResponse> response = exceptionHandlerController.handleStaleReservationError(new StaleReservationException(STALE_EX));
+    assertThat(response.getStatusCode(),is(HttpStatus.PRECONDITION_FAILED));
+    assertsOn(response,STALE_EX);
+  }
+
   private void assertsOn(ResponseEntity<ReservationResponse> response,String msg){
     ReservationResponse reservationResponse = response.getBody();
     assertThat(reservationResponse.getError(),is(Boolean.TRUE));
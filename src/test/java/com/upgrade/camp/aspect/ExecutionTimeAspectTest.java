@@ -0,0 +1,76 @@
+package com.upgrade.camp.aspect;
+
+import com.upgrade.camp.controller.ReservationController;
+import com.upgrade.camp.service.exception.ReservationNotFoundException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ExecutionTimeAspectTest {
+
+  private static final String RESULT = "result";
+  private static final String METHOD = "ReservationController.findById";
+
+  @Spy
+  private MeterRegistry meterRegistry = new SimpleMeterRegistry();
+  @Mock
+  private ProceedingJoinPoint joinPoint;
+  @Mock
+  private MethodSignature signature;
+  @InjectMocks
+  private ExecutionTimeAspect executionTimeAspect;
+
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
+
+  @Before
+  public void setUp() throws NoSuchMethodException {
+    when(joinPoint.getSignature()).thenReturn(signature);
+    when(signature.getMethod()).thenReturn(ReservationController.class.getMethod("findById",String.class));
+  }
+
+  @Test
+  public void testRecordsSuccessPerMethod() throws Throwable {
+    when(joinPoint.proceed()).thenReturn(RESULT);
+    assertThat(executionTimeAspect.logExecutionTime(joinPoint),is(RESULT));
+    executionTimeAspect.logExecutionTime(joinPoint);
+    assertThat(timer("SUCCESS","none").count(),is(2L));
+  }
+
+  @Test
+  public void testRecordsErrorOutcome() throws Throwable {
+    when(joinPoint.proceed()).thenThrow(new ReservationNotFoundException("Reservation not found"));
+    expectedException.expect(ReservationNotFoundException.class);
+    try{
+      executionTimeAspect.logExecutionTime(joinPoint);
+    }finally {
+      assertThat(timer("ERROR","ReservationNotFoundException").count(),is(1L));
+      assertThat(meterRegistry.find(ExecutionTimeAspect.TIMER_NAME).tag("outcome","SUCCESS").timer(),is(nullValue()));
+    }
+  }
+
+  private Timer timer(String outcome, String exception){
+    return meterRegistry.get(ExecutionTimeAspect.TIMER_NAME)
+                        .tag("method",METHOD)
+                        .tag("outcome",outcome)
+                        .tag("exception",exception)
+                        .timer();
+  }
+}
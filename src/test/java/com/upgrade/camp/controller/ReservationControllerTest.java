@@ -1,13 +1,26 @@
 package com.upgrade.camp.controller;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.upgrade.camp.controller.exception.BadRequestException;
 import com.upgrade.camp.controller.request.ReservationRequest;
-import com.upgrade.camp.controller.response.AvailableDaysResponse;
+import com.upgrade.camp.controller.response.AvailabilityFormat;
 import com.upgrade.camp.controller.response.ReservationResponse;
+import com.upgrade.camp.guava.AvailabilityCacheProperties;
+import com.upgrade.camp.guava.AvailabilityResponseCache;
+import com.upgrade.camp.guava.AvailabilitySnapshot;
+import com.upgrade.camp.guava.BlockAvailability;
+import com.upgrade.camp.guava.CacheKey;
 import com.upgrade.camp.model.Reservation;
+import com.upgrade.camp.model.Stay;
 import com.upgrade.camp.service.ReservationService;
+import com.upgrade.camp.service.calendar.StayCalendar;
 import com.upgrade.camp.service.exception.ModelConstraintReservation;
 import com.upgrade.camp.service.exception.ReservationNotFoundException;
+import com.upgrade.camp.service.exception.StaleReservationException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.SneakyThrows;
+import org.apache.commons.lang3.StringUtils;
 import org.hamcrest.Matcher;
 import org.junit.Before;
 import org.junit.Rule;
@@ -16,19 +29,27 @@ import org.junit.rules.ExpectedException;
 import org.junit.runner.RunWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
 
+import java.time.Clock;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.List;
 import java.util.UUID;
+import java.util.stream.Collectors;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.nullValue;
 import static org.hamcrest.CoreMatchers.notNullValue;
-import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.not;
 import static org.junit.Assert.assertThat;
 import static org.mockito.Mockito.*;
 
@@ -46,6 +67,10 @@ public class ReservationControllerTest {
 
   @Mock
   private ReservationService reservationService;
+  @Spy
+  private StayCalendar stayCalendar = new StayCalendar();
+  @Spy
+  private AvailabilityResponseCache availabilityResponseCache = new AvailabilityResponseCache();
   @InjectMocks
   private ReservationController reservationController;
   @Mock
@@ -53,24 +78,29 @@ public class ReservationControllerTest {
   @Mock
   private Reservation reservation;
 
-  private List<LocalDateTime>dates;
+  private long freeMask;
 
   @Rule
   public ExpectedException expectedException = ExpectedException.none();
 
   @Before
   public void setUp(){
+    ReflectionTestUtils.setField(stayCalendar,"clock",Clock.systemDefaultZone());
     when(reservationRequest.getEmail()).thenReturn(EMAIL);
     when(reservationRequest.getFullName()).thenReturn(FULL_NAME);
     when(reservationRequest.getStartDate()).thenReturn(START_DATE);
     when(reservationRequest.getEndDate()).thenReturn(END_DATE);
 
-    dates = Arrays.asList(LocalDateTime.now());
+    ReflectionTestUtils.setField(availabilityResponseCache,"objectMapper",Jackson2ObjectMapperBuilder.json().build());
+    ReflectionTestUtils.setField(availabilityResponseCache,"cacheProperties",new AvailabilityCacheProperties());
+    ReflectionTestUtils.setField(availabilityResponseCache,"meterRegistry",new SimpleMeterRegistry());
+    availabilityResponseCache.buildCache();
+    freeMask = -1L;
 
     doNothing().when(reservationService).createReservation(any(Reservation.class));
     doReturn(reservation).when(reservationService).findById(UID);
-    doReturn(reservation).when(reservationService).updateReservation(eq(reservationRequest),eq(UID));
-    doReturn(dates).when(reservationService).findAvailability(any(),any());
+    doReturn(reservation).when(reservationService).updateReservation(eq(reservationRequest),eq(UID),isNull());
+    doAnswer(invocation -> snapshotOf(invocation.getArgument(0))).when(reservationService).findAvailability(any());
   }
 
   @Test
@@ -119,19 +149,51 @@ public class ReservationControllerTest {
 
   @Test
   public void testUpdateReservation(){
-    ResponseEntity<ReservationResponse> response = reservationController.updateReservation(reservationRequest,UID);
+    ResponseEntity<ReservationResponse> response = reservationController.updateReservation(reservationRequest,UID,null);
     ReservationResponse reservationResponse = response.getBody();
     assertReservationResponseWith(reservationResponse,reservation,null,Boolean.FALSE);
-    verify(reservationService).updateReservation(eq(reservationRequest),eq(UID));
+    verify(reservationService).updateReservation(eq(reservationRequest),eq(UID),isNull());
+  }
+
+  @Test
+  public void testUpdateWithIfMatchSendsTheNewETag(){
+    when(reservation.getVersion()).thenReturn(5L);
+    doReturn(reservation).when(reservationService).updateReservation(eq(reservationRequest),eq(UID),eq(4L));
+    ResponseEntity<ReservationResponse> response = reservationController.updateReservation(reservationRequest,UID,"\"4\"");
+    assertThat(response.getStatusCode(),is(HttpStatus.OK));
+    assertThat(response.getHeaders().getETag(),is("\"5\""));
+  }
+
+  @Test
+  public void testUpdateWithIfMatchAny(){
+    reservationController.updateReservation(reservationRequest,UID,"*");
+    verify(reservationService).updateReservation(eq(reservationRequest),eq(UID),isNull());
+  }
+
+  @Test
+  public void testUpdateWithWeakIfMatchNeverMatches(){
+    expectedException.expect(StaleReservationException.class);
+    try{
+      reservationController.updateReservation(reservationRequest,UID,"W/\"4\"");
+    }finally {
+      verify(reservationService,never()).updateReservation(any(),any(),any());
+    }
+  }
+
+  @Test
+  public void testFindByIdSendsTheETag(){
+    when(reservation.getVersion()).thenReturn(2L);
+    ResponseEntity<ReservationResponse> response = reservationController.findById(UID);
+    assertThat(response.getHeaders().getETag(),is("\"2\""));
   }
 
   @Test
   public void testUpdateNotFound(){
-    doThrow(new ReservationNotFoundException(NOT_FOUND_EX)).when(reservationService).updateReservation(eq(reservationRequest),eq(UID));
+    doThrow(new ReservationNotFoundException(NOT_FOUND_EX)).when(reservationService).updateReservation(eq(reservationRequest),eq(UID),isNull());
     expectedException.expect(ReservationNotFoundException.class);
     expectedException.expectMessage(NOT_FOUND_EX);
-    reservationController.updateReservation(reservationRequest,UID);
-    verify(reservationService).updateReservation(eq(reservationRequest),eq(UID));
+    reservationController.updateReservation(reservationRequest,UID,null);
+    verify(reservationService).updateReservation(eq(reservationRequest),eq(UID),isNull());
   }
 
   @Test
@@ -142,11 +204,104 @@ public class ReservationControllerTest {
 
   @Test
   public void testAvailability(){
-    ResponseEntity<AvailableDaysResponse> responseEntity = reservationController.checkAvailability(LocalDate.now(),LocalDate.now());
-    AvailableDaysResponse response = responseEntity.getBody();
-    assertThat(response.getError(),is(Boolean.FALSE));
-    assertThat(response.getMessage(),is(nullValue()));
-    assertThat(response.getResponse(),equalTo(dates));
+    LocalDate today = LocalDate.now();
+    ResponseEntity<byte[]> responseEntity = reservationController.checkAvailability(today,today.plusDays(3),null,null,null);
+    JsonNode response = read(responseEntity);
+    assertThat(responseEntity.getStatusCode(),is(HttpStatus.OK));
+    assertThat(responseEntity.getHeaders().getContentType(),is(MediaType.APPLICATION_JSON_UTF8));
+    assertThat(response.get("error").asBoolean(),is(false));
+    assertThat(response.get("message").isNull(),is(true));
+    assertThat(response.get("response").size(),is(3));
+    assertThat(response.get("response").get(0).asText(),is(today.plusDays(1) + " 12:00:00"));
+    verify(reservationService).findAvailability(Stay.of(today.toEpochDay() + 1,today.toEpochDay() + 4));
+  }
+
+  @Test
+  public void testAvailabilityDefaultsToNextMonth(){
+    reservationController.checkAvailability(null,null,null,"*/*",null);
+    long today = LocalDate.now().toEpochDay();
+    verify(reservationService).findAvailability(Stay.of(today + 1,today + 31));
+  }
+
+  @Test
+  public void testCompactAvailabilityFromAcceptHeader(){
+    ResponseEntity<byte[]> responseEntity = reservationController.checkAvailability(null,null,null,"application/json, " + AvailabilityFormat.BITMASK_VALUE,null);
+    assertThat(responseEntity.getHeaders().getContentType(),is(AvailabilityFormat.BITMASK.getMediaType()));
+    assertThat(read(responseEntity).get("response").get("free").asText(),is(StringUtils.repeat('1',30)));
+  }
+
+  @Test
+  public void testAvailabilityVariesByAcceptHeader(){
+    ResponseEntity<byte[]> responseEntity = reservationController.checkAvailability(null,null,null,AvailabilityFormat.BITMASK_VALUE,null);
+    assertThat(responseEntity.getHeaders().getVary(),is(Arrays.asList(HttpHeaders.ACCEPT)));
+  }
+
+  @Test
+  public void testFormatParameterOverridesAcceptHeader(){
+    ResponseEntity<byte[]> responseEntity = reservationController.checkAvailability(null,null,"ranges",AvailabilityFormat.BITMASK_VALUE,null);
+    assertThat(responseEntity.getHeaders().getContentType(),is(AvailabilityFormat.RANGES.getMediaType()));
+    assertThat(read(responseEntity).get("response").get("free").toString(),is("[[0,30]]"));
+  }
+
+  @Test
+  public void testUnknownAvailabilityFormat(){
+    expectedException.expect(BadRequestException.class);
+    reservationController.checkAvailability(null,null,"csv",null,null);
+  }
+
+  @Test
+  public void testNotModifiedWhenTheTagMatches(){
+    String eTag = reservationController.checkAvailability(null,null,null,null,null).getHeaders().getETag();
+    for(String ifNoneMatch : Arrays.asList(eTag,"W/" + eTag,"\"other\", " + eTag,"*")){
+      ResponseEntity<byte[]> responseEntity = reservationController.checkAvailability(null,null,null,null,ifNoneMatch);
+      assertThat(responseEntity.getStatusCode(),is(HttpStatus.NOT_MODIFIED));
+      assertThat(responseEntity.getHeaders().getETag(),is(eTag));
+      assertThat(responseEntity.getBody(),is(nullValue()));
+    }
+  }
+
+  @Test
+  public void testOtherFreeDaysChangeTheTag(){
+    ResponseEntity<byte[]> first = reservationController.checkAvailability(null,null,null,null,null);
+    freeMask = -2L;
+    ResponseEntity<byte[]> second = reservationController.checkAvailability(null,null,null,null,first.getHeaders().getETag());
+    assertThat(second.getStatusCode(),is(HttpStatus.OK));
+    assertThat(second.getHeaders().getETag(),not(first.getHeaders().getETag()));
+  }
+
+  @Test
+  public void testTagOfAnotherAcceptHeaderIsNotMatched(){
+    String eTag = reservationController.checkAvailability(null,null,null,MediaType.APPLICATION_JSON_VALUE,null).getHeaders().getETag();
+    ResponseEntity<byte[]> notModified = reservationController.checkAvailability(null,null,null,MediaType.APPLICATION_JSON_VALUE,eTag);
+    ResponseEntity<byte[]> bitmask = reservationController.checkAvailability(null,null,null,AvailabilityFormat.BITMASK_VALUE,eTag);
+    assertThat(notModified.getStatusCode(),is(HttpStatus.NOT_MODIFIED));
+    assertThat(notModified.getHeaders().getVary(),is(Arrays.asList(HttpHeaders.ACCEPT)));
+    assertThat(bitmask.getStatusCode(),is(HttpStatus.OK));
+    assertThat(bitmask.getHeaders().getContentType(),is(AvailabilityFormat.BITMASK.getMediaType()));
+    assertThat(bitmask.getHeaders().getETag(),not(eTag));
+  }
+
+  @Test
+  public void testTagDependsOnTheFormat(){
+    String dates = reservationController.checkAvailability(null,null,null,null,null).getHeaders().getETag();
+    String bitmask = reservationController.checkAvailability(null,null,"bitmask",null,null).getHeaders().getETag();
+    assertThat(bitmask,not(dates));
+  }
+
+  @Test
+  public void testBodyIsSerializedOnce(){
+    byte[] first = reservationController.checkAvailability(null,null,null,null,null).getBody();
+    byte[] second = reservationController.checkAvailability(null,null,null,null,null).getBody();
+    assertThat(second == first,is(true));
+  }
+
+  @Test
+  public void testCreatedReservationCoversWholeNights(){
+    reservationController.saveReservation(reservationRequest);
+    verify(reservationService).createReservation(argThat(reservation ->
+            Stay.of(reservation).equals(Stay.between(START_DATE,END_DATE)) &&
+            reservation.getStartDate().toLocalTime().equals(Stay.CHECK_IN_TIME) &&
+            reservation.getEndDate().toLocalTime().equals(Stay.CHECK_IN_TIME)));
   }
 
   private void assertReservationResponseWith(ReservationResponse reservationResponse, Matcher<Object> response, Matcher<Object> msg, Boolean error){
@@ -160,4 +315,18 @@ public class ReservationControllerTest {
     assertThat(reservationResponse.getMessage(),is(msg));
     assertThat(reservationResponse.getResponse(),is(response));
   }
+
+  /**
+   * every block with the current free mask
+   */
+  private AvailabilitySnapshot snapshotOf(Stay window){
+    List<CacheKey> keys = CacheKey.blocksBetween(window.getStartDay(),window.getEndDay());
+    List<BlockAvailability> blocks = keys.stream().map(key -> new BlockAvailability(freeMask)).collect(Collectors.toList());
+    return new AvailabilitySnapshot(window,keys,blocks);
+  }
+
+  @SneakyThrows
+  private static JsonNode read(ResponseEntity<byte[]> responseEntity){
+    return new ObjectMapper().readTree(responseEntity.getBody());
+  }
 }
@@ -0,0 +1,44 @@
+package com.upgrade.camp.datasource;
+
+import com.upgrade.camp.datasource.ReadWriteRoutingDataSource.Route;
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class ReadWriteRoutingDataSourceTest {
+
+  @After
+  public void tearDown(){
+    TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+  }
+
+  @Test
+  public void testWritesGoToThePrimary(){
+    assertThat(ReadWriteRoutingDataSource.route(),is(Route.PRIMARY));
+  }
+
+  @Test
+  public void testReadOnlyTransactionsGoToTheReplica(){
+    TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+    assertThat(ReadWriteRoutingDataSource.route(),is(Route.REPLICA));
+  }
+
+  @Test
+  public void testPinnedReadsGoToThePrimary(){
+    ReplicaDataSourceProperties replicaProperties = new ReplicaDataSourceProperties();
+    replicaProperties.setMaxLag(Duration.ofMinutes(1));
+    ReadYourWrites readYourWrites = new ReadYourWrites();
+    ReflectionTestUtils.setField(readYourWrites,"replicaProperties",replicaProperties);
+    readYourWrites.buildCache();
+    readYourWrites.wrote("uid");
+    TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+    assertThat(readYourWrites.read("uid",ReadWriteRoutingDataSource::route),is(Route.PRIMARY));
+    assertThat(readYourWrites.read("other",ReadWriteRoutingDataSource::route),is(Route.REPLICA));
+  }
+}
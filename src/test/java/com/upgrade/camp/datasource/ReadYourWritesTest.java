@@ -0,0 +1,93 @@
+package com.upgrade.camp.datasource;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+
+import java.time.Duration;
+import java.util.Optional;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.*;
+
+public class ReadYourWritesTest {
+
+  private static final String UID = "uid";
+
+  private ReplicaDataSourceProperties replicaProperties;
+  private PlatformTransactionManager transactionManager;
+  private ReadYourWrites readYourWrites;
+
+  @Before
+  public void setUp(){
+    replicaProperties = new ReplicaDataSourceProperties();
+    replicaProperties.setMaxLag(Duration.ofMinutes(1));
+    transactionManager = mock(PlatformTransactionManager.class);
+    readYourWrites = readYourWritesWith(replicaProperties);
+  }
+
+  @Test
+  public void testReadsGoToTheReplicaBeforeAnyWrite(){
+    assertThat(readYourWrites.read(UID,ReadYourWrites::isPinnedToPrimary),is(false));
+  }
+
+  @Test
+  public void testOnPrimaryIsPinnedWithoutAnyWrite(){
+    assertThat(readYourWrites.onPrimary(ReadYourWrites::isPinnedToPrimary),is(true));
+    assertThat(ReadYourWrites.isPinnedToPrimary(),is(false));
+  }
+
+  @Test
+  public void testWrittenReservationIsReadFromThePrimaryWithinTheLag(){
+    readYourWrites.wrote(UID);
+    assertThat(readYourWrites.read(UID,ReadYourWrites::isPinnedToPrimary),is(true));
+    assertThat(readYourWrites.read("other",ReadYourWrites::isPinnedToPrimary),is(false));
+    assertThat(ReadYourWrites.isPinnedToPrimary(),is(false));
+  }
+
+  @Test
+  public void testWritesOlderThanTheLagAreReadFromTheReplica(){
+    replicaProperties.setMaxLag(Duration.ZERO);
+    readYourWrites = readYourWritesWith(replicaProperties);
+    readYourWrites.wrote(UID);
+    assertThat(readYourWrites.read(UID,ReadYourWrites::isPinnedToPrimary),is(false));
+  }
+
+  @Test
+  public void testMissIsReadAgainOnThePrimaryInANewTransaction(){
+    replicaProperties.setUrl("jdbc:h2:mem:replica");
+    assertThat(readYourWrites.readMissOnPrimary(() -> Optional.of(ReadYourWrites.isPinnedToPrimary())),is(Optional.of(true)));
+    verify(transactionManager).getTransaction(argThat(definition -> definition.isReadOnly() &&
+            definition.getPropagationBehavior() == TransactionDefinition.PROPAGATION_REQUIRES_NEW));
+    assertThat(ReadYourWrites.isPinnedToPrimary(),is(false));
+  }
+
+  @Test
+  public void testMissStandsWithoutAReplica(){
+    assertThat(readYourWrites.readMissOnPrimary(() -> Optional.of(true)),is(Optional.empty()));
+    verify(transactionManager,never()).getTransaction(any());
+  }
+
+  @Test
+  public void testNestedReadKeepsThePin(){
+    readYourWrites.wrote(UID);
+    boolean pinnedAfterNestedRead = readYourWrites.read(UID,() -> {
+      readYourWrites.read(UID,ReadYourWrites::isPinnedToPrimary);
+      return ReadYourWrites.isPinnedToPrimary();
+    });
+    assertThat(pinnedAfterNestedRead,is(true));
+  }
+
+  private ReadYourWrites readYourWritesWith(ReplicaDataSourceProperties replicaProperties){
+    ReadYourWrites readYourWrites = new ReadYourWrites();
+    ReflectionTestUtils.setField(readYourWrites,"replicaProperties",replicaProperties);
+    ReflectionTestUtils.setField(readYourWrites,"transactionManager",transactionManager);
+    readYourWrites.buildCache();
+    return readYourWrites;
+  }
+}
@@ -1,21 +1,22 @@
 package com.upgrade.camp.guava;
 
 import com.google.common.cache.LoadingCache;
-import com.upgrade.camp.model.Reservation;
-import com.upgrade.camp.repository.ReservationRepository;
-import lombok.SneakyThrows;
+import com.upgrade.camp.model.Stay;
+import com.upgrade.camp.service.occupancy.DayOccupancyIndex;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.InjectMocks;
-import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.test.util.ReflectionTestUtils;
 
 
+import java.time.Duration;
 import java.time.LocalDateTime;
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.List;
 
 import static org.junit.Assert.assertThat;
 import static org.mockito.Mockito.*;
@@ -24,61 +25,112 @@ import static org.hamcrest.CoreMatchers.is;
 @RunWith(MockitoJUnitRunner.class)
 public class SearchesCacheProducerTest {
 
-  @Mock
-  private Reservation reservation;
-  @Mock
-  private ReservationRepository reservationRepository;
+  @Spy
+  private DayOccupancyIndex occupancyIndex = new DayOccupancyIndex();
+  @Spy
+  private AvailabilityCacheProperties cacheProperties = new AvailabilityCacheProperties();
   @InjectMocks
   private SearchesCacheProducer cacheProducer;
-  private LoadingCache<CacheKey,List<LocalDateTime>> cache;
+  private LoadingCache<CacheKey,BlockAvailability> cache;
+  private MeterRegistry meterRegistry = new SimpleMeterRegistry();
 
-  private LocalDateTime start;
-  private LocalDateTime end;
+  private Stay stay;
+  private long bookedDay;
   private CacheKey cacheKey;
-  private List<LocalDateTime> freeDates;
 
   @Before
   public void setUp(){
+    ReflectionTestUtils.setField(cacheProducer,"meterRegistry",meterRegistry);
     cache = cacheProducer.buildCache();
-    start = LocalDateTime.of(2019,11,1,12,0,0,0);
-    end = LocalDateTime.of(2019,11,30,12,0,0,0);
     LocalDateTime d1 = LocalDateTime.of(2019,11,1,12,0,0,0);
     LocalDateTime d2 = LocalDateTime.of(2019,11,5,12,0,0,0);
-    freeDates = new ArrayList<>();
+    bookedDay = d1.toLocalDate().toEpochDay();
+    cacheKey = CacheKey.ofDay(bookedDay);
 
-    cacheKey = CacheKey.builder()
-                       .startDate(start)
-                       .endDate(end)
-                       .build();
-
-    when(reservation.getStartDate()).thenReturn(d1);
-    when(reservation.getEndDate()).thenReturn(d2);
-    when(reservationRepository.getAllReservationBetween(start,end)).thenReturn(Arrays.asList(reservation));
+    stay = Stay.between(d1,d2);
+    occupancyIndex.occupy(stay.getStartDay(),stay.getEndDay());
   }
 
   @Test
   public void testObtainAvailability(){
-    List<LocalDateTime> freeDates =  cache.getUnchecked(cacheKey);
-    verify(reservationRepository).getAllReservationBetween(eq(start),eq(end));
-    assertThat(freeDates.size(),is(25));
+    long freeDays = cache.getUnchecked(cacheKey).getFreeMask();
+    verify(occupancyIndex).freeMask(eq(cacheKey.getStartDay()),eq(cacheKey.getEndDay()));
+    assertThat(Long.bitCount(freeDays),is(CacheKey.BLOCK_DAYS - 4));
+    assertThat(isFree(freeDays,LocalDateTime.of(2019,11,4,12,0,0,0)),is(false));
+    assertThat(isFree(freeDays,LocalDateTime.of(2019,11,5,12,0,0,0)),is(true));
   }
 
   @Test
-  public void testObtainAvailabilityUsingCallingRepositoryOnlyOnce(){
-    List<LocalDateTime> freeDates =  cache.getUnchecked(cacheKey);
-    cache.getUnchecked(cacheKey);
-    verify(reservationRepository).getAllReservationBetween(eq(start),eq(end));
-    assertThat(freeDates.size(),is(25));
+  public void testObtainAvailabilityUsingCallingIndexOnlyOnce(){
+    long freeDays = cache.getUnchecked(cacheKey).getFreeMask();
+    cache.getUnchecked(CacheKey.ofDay(bookedDay + 1));
+    verify(occupancyIndex).freeMask(anyLong(),anyLong());
+    assertThat(Long.bitCount(freeDays),is(CacheKey.BLOCK_DAYS - 4));
   }
 
   @Test
   public void testObtainAvailabilityWhenThereIsNoReservation(){
-    when(reservationRepository.getAllReservationBetween(any(),any())).thenReturn(new ArrayList<>());
-    List<LocalDateTime>freeDates = cache.getUnchecked(cacheKey);
-    verify(reservationRepository).getAllReservationBetween(any(),any());
-    assertThat(freeDates.size(),is(29));
+    occupancyIndex.release(stay.getStartDay(),stay.getEndDay());
+    long freeDays = cache.getUnchecked(cacheKey).getFreeMask();
+    assertThat(Long.bitCount(freeDays),is(CacheKey.BLOCK_DAYS));
+    assertThat(Long.numberOfTrailingZeros(freeDays),is(0));
+  }
+
+  @Test
+  public void testBlocksAreAlignedOnTheEpoch(){
+    assertThat(CacheKey.ofDay(0).getStartDay(),is(0L));
+    assertThat(CacheKey.ofDay(-1).getStartDay(),is((long) -CacheKey.BLOCK_DAYS));
+    assertThat(cacheKey.getStartDay() <= bookedDay && bookedDay < cacheKey.getEndDay(),is(true));
+  }
+
+  @Test
+  public void testBlocksBetween(){
+    long start = CacheKey.BLOCK_DAYS * 10L - 1;
+    assertThat(CacheKey.blocksBetween(start,start + 1),is(Arrays.asList(new CacheKey(9))));
+    assertThat(CacheKey.blocksBetween(start,start + 2),is(Arrays.asList(new CacheKey(9),new CacheKey(10))));
+    assertThat(CacheKey.blocksBetween(start,start).isEmpty(),is(true));
+  }
+
+  @Test
+  public void testMaskOfTrimsTheBlockToTheWindow(){
+    long blockStart = cacheKey.getStartDay();
+    assertThat(cacheKey.maskOf(blockStart - 5,blockStart + 40),is(0xFFFFFFFFL));
+    assertThat(cacheKey.maskOf(blockStart + 1,blockStart + 3),is(0b110L));
+    assertThat(cacheKey.maskOf(blockStart + 31,blockStart + 40),is(1L << 31));
+    assertThat(cacheKey.maskOf(blockStart + 40,blockStart + 50),is(0L));
   }
 
+  @Test
+  public void testStatisticsAreExported(){
+    cache.getUnchecked(cacheKey);
+    cache.getUnchecked(cacheKey);
+    assertThat(cache.stats().hitCount(),is(1L));
+    assertThat(meterRegistry.get("cache.gets").tag("cache",SearchesCacheProducer.AVAILABILITY_CACHE).tag("result","hit").functionCounter().count(),is(1.0));
+    assertThat(meterRegistry.get("cache.gets").tag("cache",SearchesCacheProducer.AVAILABILITY_CACHE).tag("result","miss").functionCounter().count(),is(1.0));
+  }
 
+  @Test
+  public void testMaximumSizeIsConfigurable(){
+    cacheProperties.setMaximumSize(1);
+    LoadingCache<CacheKey,BlockAvailability> smallCache = cacheProducer.buildCache();
+    smallCache.getUnchecked(cacheKey);
+    smallCache.getUnchecked(CacheKey.ofDay(cacheKey.getEndDay()));
+    assertThat(smallCache.size(),is(1L));
+    assertThat(smallCache.stats().evictionCount(),is(1L));
+  }
+
+  @Test
+  public void testRefreshIsLoadedByTheNextRead() throws InterruptedException {
+    cacheProperties.setRefreshAfterWrite(Duration.ofMillis(1));
+    LoadingCache<CacheKey,BlockAvailability> refreshingCache = cacheProducer.buildCache();
+    refreshingCache.getUnchecked(cacheKey);
+    occupancyIndex.release(stay.getStartDay(),stay.getEndDay());
+    Thread.sleep(5);
+    assertThat(Long.bitCount(refreshingCache.getUnchecked(cacheKey).getFreeMask()),is(CacheKey.BLOCK_DAYS));
+  }
+
+  private boolean isFree(long freeDays, LocalDateTime date){
+    return (freeDays >>> (date.toLocalDate().toEpochDay() - cacheKey.getStartDay()) & 1L) != 0;
+  }
 
 }
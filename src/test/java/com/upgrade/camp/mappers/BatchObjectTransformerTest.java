@@ -0,0 +1,98 @@
+package com.upgrade.camp.mappers;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.io.Resources;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class BatchObjectTransformerTest {
+
+    private static final String OBJECT_API_NAME = "object";
+    private static final int DOCUMENTS = 50;
+    private static final int MAX_IN_FLIGHT = 3;
+
+    @Rule
+    public ExpectedException expectedException = ExpectedException.none();
+
+    private ObjectMapper objectMapper = new ObjectMapper();
+    private ExecutorService executor;
+    private BatchObjectTransformer batchObjectTransformer;
+    private List<JsonNode> sources;
+
+    @Before
+    public void setUp() throws IOException {
+        executor = Executors.newFixedThreadPool(4);
+        batchObjectTransformer = new BatchObjectTransformer(new ObjectTransformer(), executor, MAX_IN_FLIGHT);
+        ObjectNode source = (ObjectNode) objectMapper.readTree(Resources.getResource("transformation/object_source.json"));
+        sources = IntStream.range(0, DOCUMENTS)
+                           .mapToObj(index -> source.deepCopy().put("d_TrackingId", "TRK-" + index))
+                           .collect(Collectors.toList());
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testTransformAllKeepsOrder() {
+        List<JsonNode> targets = batchObjectTransformer.transformAll(OBJECT_API_NAME, sources);
+        assertThat(targets.size(), is(DOCUMENTS));
+        for (int index = 0; index < DOCUMENTS; index++) {
+            assertThat(targets.get(index).get("shipment_id").asText(), is("TRK-" + index));
+        }
+    }
+
+    @Test
+    public void testTransformEachPullsSourcesOnlyAsResultsAreConsumed() {
+        AtomicInteger pulled = new AtomicInteger();
+        List<JsonNode> targets = new ArrayList<>();
+        batchObjectTransformer.transformEach(OBJECT_API_NAME, sources.stream().peek(source -> pulled.incrementAndGet()), target -> {
+            assertTrue(pulled.get() - targets.size() <= MAX_IN_FLIGHT);
+            targets.add(target);
+        });
+        assertThat(targets.size(), is(DOCUMENTS));
+    }
+
+    @Test
+    public void testTransformAllWithInvalidDocument() {
+        sources.set(DOCUMENTS / 2, null);
+        expectedException.expect(NullPointerException.class);
+        batchObjectTransformer.transformAll(OBJECT_API_NAME, sources);
+    }
+
+    @Test
+    public void testTransformEachIntoFormat() throws IOException {
+        String records = sources.stream().map(JsonNode::toString).collect(Collectors.joining("\n"));
+        ByteArrayOutputStream target = new ByteArrayOutputStream();
+        long transformed = batchObjectTransformer.transformEachIntoFormat(OBJECT_API_NAME,
+                new ByteArrayInputStream(records.getBytes(StandardCharsets.UTF_8)), target);
+        String[] lines = new String(target.toByteArray(), StandardCharsets.UTF_8).split("\n");
+        assertThat(transformed, is((long) DOCUMENTS));
+        assertThat(lines.length, is(DOCUMENTS));
+        for (int index = 0; index < DOCUMENTS; index++) {
+            assertThat(objectMapper.readTree(lines[index]).get("shipment_id").asText(), is("TRK-" + index));
+        }
+    }
+}
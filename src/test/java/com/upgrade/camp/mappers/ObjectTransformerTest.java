@@ -0,0 +1,137 @@
+package com.upgrade.camp.mappers;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.NullNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+import com.google.common.io.Resources;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.io.IOException;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class ObjectTransformerTest {
+
+    private static final String OBJECT_API_NAME = "object";
+
+    @Rule
+    public ExpectedException expectedException = ExpectedException.none();
+
+    private ObjectMapper objectMapper = new ObjectMapper();
+    private ObjectTransformer objectTransformer;
+    private JsonNode source;
+    private JsonNode expected;
+
+    @Before
+    public void setUp() throws IOException {
+        objectTransformer = new ObjectTransformer();
+        source = objectMapper.readTree(Resources.getResource("transformation/object_source.json"));
+        expected = objectMapper.readTree(Resources.getResource("transformation/object_expected.json"));
+    }
+
+    @Test
+    public void testTransformIntoFormat() {
+        assertThat(objectTransformer.transformIntoFormat(OBJECT_API_NAME, source), is(expected));
+    }
+
+    @Test
+    public void testTransformIntoFormatTwiceReusesPlanButNotTarget() {
+        JsonNode first = objectTransformer.transformIntoFormat(OBJECT_API_NAME, source);
+        JsonNode second = objectTransformer.transformIntoFormat(OBJECT_API_NAME, source);
+        assertThat(second, is(expected));
+        assertThat(second, not(sameInstance(first)));
+    }
+
+    @Test
+    public void testTransformIntoFormatWithMissingValuesWrittenAsNull() {
+        ((ObjectNode) source).remove("d_ContainerNumber");
+        ((ObjectNode) source).remove("shipment_lines");
+        JsonNode target = objectTransformer.transformIntoFormat(OBJECT_API_NAME, source);
+        assertThat(target.get("container_no"), is(NullNode.getInstance()));
+        assertThat(target.get("shipment_lines").size(), is(0));
+        assertThat(target.get("ship_from").get("physical_address").get("address_line_2"), is(NullNode.getInstance()));
+    }
+
+    @Test
+    public void testTransformIntoFormatWithMissingValuesSkipped() {
+        objectTransformer = new ObjectTransformer(MissingValuePolicy.SKIP, null);
+        ((ObjectNode) source).remove("d_ContainerNumber");
+        ((ObjectNode) source).remove("shipment_lines");
+        JsonNode target = objectTransformer.transformIntoFormat(OBJECT_API_NAME, source);
+        assertThat(target.has("container_no"), is(false));
+        assertThat(target.has("shipment_lines"), is(false));
+        assertThat(target.has("gateway"), is(false));
+        assertThat(target.get("ship_from").get("physical_address").has("address_line_2"), is(false));
+        assertThat(target.get("ship_from").get("site_id").asText(), is("ORIGIN-1"));
+        assertThat(target.get("flight_no"), is(nullValue()));
+    }
+
+    @Test
+    public void testTransformIntoFormatWithMissingValuesDefaulted() {
+        objectTransformer = new ObjectTransformer(MissingValuePolicy.DEFAULT, TextNode.valueOf("N/A"));
+        ((ObjectNode) source).remove("d_ContainerNumber");
+        JsonNode target = objectTransformer.transformIntoFormat(OBJECT_API_NAME, source);
+        assertThat(target.get("container_no").asText(), is("N/A"));
+        assertThat(target.get("flight_no").asText(), is("N/A"));
+        assertThat(target.get("shipment_lines").get(1).get("material_description").asText(), is("N/A"));
+        assertThat(target.get("total_value").get("currency_code").asText(), is("EUR"));
+    }
+
+    @Test
+    public void testTransformIntoFormatWithCompiledMapper() {
+        objectTransformer = new ObjectTransformer(MissingValuePolicy.NULL, NullNode.getInstance(), true);
+        assertThat(objectTransformer.transformIntoFormat(OBJECT_API_NAME, source), is(expected));
+    }
+
+    @Test
+    public void testCompiledMapperMatchesInterpretationForEveryPolicy() {
+        ((ObjectNode) source).remove("d_ContainerNumber");
+        ((ObjectNode) source).remove("d_OriginSite");
+        ((ObjectNode) source.get("shipment_lines").get(0)).remove("d_LineNotes");
+        for (MissingValuePolicy policy : MissingValuePolicy.values()) {
+            JsonNode interpreted = new ObjectTransformer(policy, TextNode.valueOf("N/A"), false).transformIntoFormat(OBJECT_API_NAME, source);
+            JsonNode compiled = new ObjectTransformer(policy, TextNode.valueOf("N/A"), true).transformIntoFormat(OBJECT_API_NAME, source);
+            assertThat(compiled, is(interpreted));
+        }
+        ((ObjectNode) source).remove("shipment_lines");
+        for (MissingValuePolicy policy : MissingValuePolicy.values()) {
+            JsonNode interpreted = new ObjectTransformer(policy, TextNode.valueOf("N/A"), false).transformIntoFormat(OBJECT_API_NAME, source);
+            JsonNode compiled = new ObjectTransformer(policy, TextNode.valueOf("N/A"), true).transformIntoFormat(OBJECT_API_NAME, source);
+            assertThat(compiled, is(interpreted));
+        }
+    }
+
+    @Test
+    public void testTransformIntoFormatWithUnknownObject() {
+        expectedException.expect(IllegalArgumentException.class);
+        objectTransformer.transformIntoFormat("unknown", source);
+    }
+
+    @Test
+    public void testCompileListToList() {
+        PropertyMapping mapping = PropertyMapping.compile("l_shipment_lines.line_volume.volume,l_shipment_lines.l_d_Volume");
+        assertThat(mapping.getKind(), is(PropertyMapping.Kind.LIST_TO_LIST));
+        assertThat(mapping.getSourcePath(), is(new String[]{"shipment_lines"}));
+        assertThat(mapping.getTargetPath(), is(new String[]{"shipment_lines"}));
+        assertThat(mapping.getElement().getKind(), is(PropertyMapping.Kind.LIST_TO_PROPERTY));
+        assertThat(mapping.getElement().getSourcePath(), is(new String[]{"d_Volume"}));
+        assertThat(mapping.getElement().getTargetPath(), is(new String[]{"line_volume", "volume"}));
+    }
+
+    @Test
+    public void testCompileProperty() {
+        PropertyMapping mapping = PropertyMapping.compile("ship_from.site_id,d_OriginSite.id");
+        assertThat(mapping.getKind(), is(PropertyMapping.Kind.PROPERTY));
+        assertThat(mapping.getSourcePath(), is(new String[]{"d_OriginSite", "id"}));
+        assertThat(mapping.getTargetPath(), is(new String[]{"ship_from", "site_id"}));
+    }
+}
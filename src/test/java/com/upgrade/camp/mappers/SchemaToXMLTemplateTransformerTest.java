@@ -0,0 +1,100 @@
+package com.upgrade.camp.mappers;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.io.Resources;
+import org.junit.Before;
+import org.junit.Test;
+import org.w3c.dom.DOMException;
+import org.w3c.dom.Document;
+
+import javax.xml.transform.TransformerException;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static com.upgrade.camp.mappers.SchemaToXSDTemplateTransformerTest.serialize;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.junit.Assert.assertThat;
+
+public class SchemaToXMLTemplateTransformerTest {
+
+    private ObjectMapper objectMapper = new ObjectMapper();
+    private ObjectNode schema;
+    private String expected;
+
+    @Before
+    public void setUp() throws IOException {
+        schema = (ObjectNode) objectMapper.readTree(Resources.getResource("schema/shipment_schema.json"));
+        expected = Resources.toString(Resources.getResource("schema/shipment_template.xml"), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testToXMLTemplate() throws TransformerException {
+        assertThat(serialize(SchemaToXMLTemplateTransformer.toXMLTemplate(schema)), is(expected));
+    }
+
+    @Test
+    public void testWriteXMLTemplate() {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        SchemaToXMLTemplateTransformer.writeXMLTemplate(schema, output);
+        assertThat(new String(output.toByteArray(), StandardCharsets.UTF_8), is(expected));
+    }
+
+    @Test
+    public void testWriteXMLTemplateMatchesDocumentWithEscapedValues() throws TransformerException {
+        ((ObjectNode) schema.get("properties").get("carrier_name")).put("description", "\"quoted\" & <tagged> 'single' caf\u00e9\n\tline\r");
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        SchemaToXMLTemplateTransformer.writeXMLTemplate(schema, output);
+        assertThat(new String(output.toByteArray(), StandardCharsets.UTF_8), is(serialize(SchemaToXMLTemplateTransformer.toXMLTemplate(schema))));
+    }
+
+    @Test
+    public void testInvalidNameFailsAlikeInBothWriters() {
+        ((ObjectNode) schema.get("properties")).set("carrier name", schema.get("properties").get("carrier_name"));
+        assertThat(invalidCharacterError(() -> SchemaToXMLTemplateTransformer.toXMLTemplate(schema)), is(true));
+        assertThat(invalidCharacterError(() -> SchemaToXMLTemplateTransformer.writeXMLTemplate(schema, new ByteArrayOutputStream())), is(true));
+    }
+
+    @Test
+    public void testToXMLTemplateFromManyThreads() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Callable<String>> tasks = IntStream.range(0, 50)
+                                                    .mapToObj(index -> (Callable<String>) () -> serialize(SchemaToXMLTemplateTransformer.toXMLTemplate(schema)))
+                                                    .collect(Collectors.toList());
+            for (Future<String> template : executor.invokeAll(tasks)) {
+                assertThat(template.get(), is(expected));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testFingerprintFollowsPropertyOrder() {
+        ObjectNode reordered = objectMapper.createObjectNode();
+        List<String> properties = Arrays.asList("type", "title", "properties");
+        properties.forEach(property -> reordered.set(property, schema.get(property)));
+        assertThat(TemplateCache.fingerprint(schema.deepCopy()), is(TemplateCache.fingerprint(schema)));
+        assertThat(TemplateCache.fingerprint(reordered), not(TemplateCache.fingerprint(schema)));
+    }
+
+    private static boolean invalidCharacterError(Runnable write) {
+        try {
+            write.run();
+            return false;
+        } catch (DOMException e) {
+            return e.code == DOMException.INVALID_CHARACTER_ERR;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.upgrade.camp.mappers;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.io.Resources;
+import org.junit.Before;
+import org.junit.Test;
+import org.w3c.dom.Document;
+
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class SchemaToXSDTemplateTransformerTest {
+
+    private ObjectMapper objectMapper = new ObjectMapper();
+    private ObjectNode schema;
+    private String expected;
+
+    @Before
+    public void setUp() throws IOException {
+        schema = (ObjectNode) objectMapper.readTree(Resources.getResource("schema/shipment_schema.json"));
+        expected = Resources.toString(Resources.getResource("schema/shipment_template.xsd"), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testToXSDTemplate() throws TransformerException {
+        assertThat(serialize(SchemaToXSDTemplateTransformer.toXSDTemplate(schema)), is(expected));
+    }
+
+    @Test
+    public void testWriteXSDTemplate() {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        SchemaToXSDTemplateTransformer.writeXSDTemplate(schema, output);
+        assertThat(new String(output.toByteArray(), StandardCharsets.UTF_8), is(expected));
+    }
+
+    @Test
+    public void testWriteXSDTemplateMatchesDocumentWithEscapedValues() throws TransformerException {
+        ((ObjectNode) schema.get("properties").get("carrier_name")).put("description", "\"quoted\" & <tagged> 'single' caf\u00e9\n\tline\r");
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        SchemaToXSDTemplateTransformer.writeXSDTemplate(schema, output);
+        assertThat(new String(output.toByteArray(), StandardCharsets.UTF_8), is(serialize(SchemaToXSDTemplateTransformer.toXSDTemplate(schema))));
+    }
+
+    @Test
+    public void testToXSDTemplateTwiceGivesIndependentCopies() throws TransformerException {
+        Document first = SchemaToXSDTemplateTransformer.toXSDTemplate(schema);
+        first.getDocumentElement().appendChild(first.createElement("xs:annotation"));
+        Document second = SchemaToXSDTemplateTransformer.toXSDTemplate(schema.deepCopy());
+        assertThat(second, not(sameInstance(first)));
+        assertThat(serialize(second), is(expected));
+    }
+
+    @Test
+    public void testToXSDTemplateForChangedSchema() throws TransformerException {
+        SchemaToXSDTemplateTransformer.toXSDTemplate(schema);
+        schema.put("title", "delivery");
+        assertThat(serialize(SchemaToXSDTemplateTransformer.toXSDTemplate(schema)), is(expected.replace("name=\"shipment\"", "name=\"delivery\"")));
+    }
+
+    static String serialize(Document document) throws TransformerException {
+        StringWriter writer = new StringWriter();
+        TransformerFactory.newInstance().newTransformer().transform(new DOMSource(document), new StreamResult(writer));
+        return writer.toString();
+    }
+}
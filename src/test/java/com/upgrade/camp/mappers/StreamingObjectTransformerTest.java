@@ -0,0 +1,98 @@
+package com.upgrade.camp.mappers;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.io.Resources;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class StreamingObjectTransformerTest {
+
+    private static final String OBJECT_API_NAME = "object";
+
+    @Rule
+    public ExpectedException expectedException = ExpectedException.none();
+
+    private ObjectMapper objectMapper = new ObjectMapper();
+    private StreamingObjectTransformer streamingObjectTransformer;
+    private ObjectNode source;
+    private JsonNode expected;
+
+    @Before
+    public void setUp() throws IOException {
+        streamingObjectTransformer = new StreamingObjectTransformer();
+        source = (ObjectNode) objectMapper.readTree(Resources.getResource("transformation/object_source.json"));
+        expected = objectMapper.readTree(Resources.getResource("transformation/object_expected.json"));
+    }
+
+    @Test
+    public void testTransformIntoFormat() throws IOException {
+        assertThat(transform(source.toString()), is(expected));
+    }
+
+    @Test
+    public void testTransformIntoFormatSkippingPropertiesNotInMap() throws IOException {
+        source.putObject("d_Unmapped").putArray("values").add(1).addObject().put("deep", "value");
+        source.putNull("d_UnmappedNull");
+        assertThat(transform(source.toString()), is(expected));
+    }
+
+    @Test
+    public void testTransformIntoFormatWithNullProperty() throws IOException {
+        source.putNull("d_TrackingId");
+        ObjectNode expectedWithNull = ((ObjectNode) expected).deepCopy();
+        expectedWithNull.putNull("shipment_id");
+        assertThat(transform(source.toString()), is(expectedWithNull));
+    }
+
+    @Test
+    public void testTransformIntoFormatWithoutObject() throws IOException {
+        expectedException.expect(IllegalArgumentException.class);
+        transform("[]");
+    }
+
+    @Test
+    public void testTransformEachIntoFormat() throws IOException {
+        String records = source + "\n" + source + "\n\n" + source + "\n";
+        ByteArrayOutputStream target = new ByteArrayOutputStream();
+        long transformed = streamingObjectTransformer.transformEachIntoFormat(OBJECT_API_NAME,
+                new ByteArrayInputStream(records.getBytes(StandardCharsets.UTF_8)), target);
+        String[] lines = new String(target.toByteArray(), StandardCharsets.UTF_8).split("\n");
+        assertThat(transformed, is(3L));
+        assertThat(lines.length, is(3));
+        for (String line : lines) {
+            assertThat(objectMapper.readTree(line), is(expected));
+        }
+    }
+
+    @Test
+    public void testTransformEachIntoFormatWithEmptyStream() throws IOException {
+        ByteArrayOutputStream target = new ByteArrayOutputStream();
+        long transformed = streamingObjectTransformer.transformEachIntoFormat(OBJECT_API_NAME, new ByteArrayInputStream(new byte[0]), target);
+        assertThat(transformed, is(0L));
+        assertThat(target.size(), is(0));
+    }
+
+    private JsonNode transform(String document) throws IOException {
+        StringWriter target = new StringWriter();
+        try (JsonParser parser = objectMapper.getFactory().createParser(document);
+             JsonGenerator generator = objectMapper.getFactory().createGenerator(target)) {
+            streamingObjectTransformer.transformIntoFormat(OBJECT_API_NAME, parser, generator);
+        }
+        return objectMapper.readTree(target.toString());
+    }
+}
@@ -0,0 +1,50 @@
+package com.upgrade.camp.model;
+
+import org.junit.Test;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class StayTest {
+
+  private static final LocalDate START = LocalDate.of(2019,11,30);
+  private static final long START_DAY = START.toEpochDay();
+
+  @Test
+  public void testBetweenIgnoresTimeOfDay(){
+    Stay stay = Stay.between(START.atTime(23,59),START.plusDays(3).atTime(0,0));
+    assertThat(stay,is(Stay.of(START_DAY,START_DAY + 3)));
+    assertThat(stay.nights(),is(3L));
+  }
+
+  @Test
+  public void testHalfOpenRange(){
+    Stay stay = Stay.of(START_DAY,START_DAY + 2);
+    assertThat(stay.contains(START_DAY),is(true));
+    assertThat(stay.contains(START_DAY + 1),is(true));
+    assertThat(stay.contains(START_DAY + 2),is(false));
+    assertThat(Stay.of(START_DAY,START_DAY).isEmpty(),is(true));
+  }
+
+  @Test
+  public void testBackToBackStaysDoNotOverlap(){
+    Stay stay = Stay.of(START_DAY,START_DAY + 2);
+    assertThat(stay.overlaps(Stay.of(START_DAY + 2,START_DAY + 4)),is(false));
+    assertThat(stay.overlaps(Stay.of(START_DAY - 2,START_DAY)),is(false));
+    assertThat(stay.overlaps(Stay.of(START_DAY + 1,START_DAY + 4)),is(true));
+    assertThat(stay.overlaps(Stay.of(START_DAY - 1,START_DAY + 5)),is(true));
+  }
+
+  @Test
+  public void testStoredDatesRoundTrip(){
+    Stay stay = Stay.of(START_DAY,START_DAY + 2);
+    LocalDateTime checkIn = stay.checkIn();
+    LocalDateTime checkOut = stay.checkOut();
+    assertThat(Stay.between(checkIn,checkOut),is(stay));
+    assertThat(checkOut,is(Stay.checkInOf(START_DAY + 2)));
+    assertThat(checkIn,is(Stay.checkInOf(START_DAY)));
+  }
+}
@@ -0,0 +1,68 @@
+package com.upgrade.camp.response;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.upgrade.camp.controller.response.AvailabilityFormat;
+import com.upgrade.camp.controller.response.CompactAvailabilityResponse;
+import com.upgrade.camp.model.FreeDays;
+import com.upgrade.camp.model.Stay;
+import lombok.SneakyThrows;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.LocalDate;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class CompactAvailabilityResponseTest {
+
+  private static final long START_DAY = LocalDate.of(2019,11,21).toEpochDay();
+
+  private ObjectMapper objectMapper = new ObjectMapper();
+  private FreeDays freeDays;
+
+  @Before
+  public void setUp(){
+    freeDays = new FreeDays(Stay.of(START_DAY,START_DAY + 7));
+    freeDays.markFree(START_DAY);
+    freeDays.markFree(START_DAY + 1);
+    freeDays.markFree(START_DAY + 4);
+    freeDays.markFree(START_DAY + 6);
+  }
+
+  @Test
+  public void testBitmask(){
+    assertThat(write(freeDays,AvailabilityFormat.BITMASK),
+               is("{\"message\":null,\"error\":false,\"response\":{\"start\":\"2019-11-21\",\"days\":7,\"free\":\"1100101\"}}"));
+  }
+
+  @Test
+  public void testRanges(){
+    assertThat(write(freeDays,AvailabilityFormat.RANGES),
+               is("{\"message\":null,\"error\":false,\"response\":{\"start\":\"2019-11-21\",\"days\":7,\"free\":[[0,2],[4,1],[6,1]]}}"));
+  }
+
+  @Test
+  public void testEmptyWindow(){
+    FreeDays none = new FreeDays(Stay.of(START_DAY,START_DAY));
+    assertThat(write(none,AvailabilityFormat.RANGES),
+               is("{\"message\":null,\"error\":false,\"response\":{\"start\":\"2019-11-21\",\"days\":0,\"free\":[]}}"));
+    assertThat(write(none,AvailabilityFormat.BITMASK),
+               is("{\"message\":null,\"error\":false,\"response\":{\"start\":\"2019-11-21\",\"days\":0,\"free\":\"\"}}"));
+  }
+
+  @Test
+  public void testFormatResolution(){
+    assertThat(AvailabilityFormat.resolve(null,null),is(AvailabilityFormat.DATES));
+    assertThat(AvailabilityFormat.resolve(null,"application/*, */*"),is(AvailabilityFormat.DATES));
+    assertThat(AvailabilityFormat.resolve(null,"not a media type"),is(AvailabilityFormat.DATES));
+    assertThat(AvailabilityFormat.resolve(null,AvailabilityFormat.RANGES_VALUE + ";q=0.9"),is(AvailabilityFormat.RANGES));
+    assertThat(AvailabilityFormat.resolve("Bitmask",AvailabilityFormat.RANGES_VALUE),is(AvailabilityFormat.BITMASK));
+    assertThat(AvailabilityFormat.resolve("dates",AvailabilityFormat.RANGES_VALUE),is(AvailabilityFormat.DATES));
+  }
+
+  @SneakyThrows
+  private String write(FreeDays freeDays, AvailabilityFormat format){
+    return objectMapper.writeValueAsString(new CompactAvailabilityResponse(freeDays,format,null,Boolean.FALSE));
+  }
+}
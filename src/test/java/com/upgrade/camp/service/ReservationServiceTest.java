@@ -2,29 +2,44 @@ package com.upgrade.camp.service;
 
 import com.google.common.cache.LoadingCache;
 import com.upgrade.camp.controller.request.ReservationRequest;
+import com.upgrade.camp.datasource.ReadYourWrites;
+import com.upgrade.camp.guava.AvailabilitySnapshot;
+import com.upgrade.camp.guava.BlockAvailability;
 import com.upgrade.camp.guava.CacheKey;
 import com.upgrade.camp.model.Reservation;
+import com.upgrade.camp.model.Stay;
+import com.upgrade.camp.repository.ReservationDayRepository;
 import com.upgrade.camp.repository.ReservationRepository;
+import com.upgrade.camp.service.calendar.StayCalendar;
 import com.upgrade.camp.service.exception.AlreadyBookedException;
 import com.upgrade.camp.service.exception.ModelConstraintReservation;
 import com.upgrade.camp.service.exception.ReservationNotFoundException;
+import com.upgrade.camp.service.exception.StaleReservationException;
+import com.upgrade.camp.service.occupancy.DayOccupancyIndex;
+import com.upgrade.camp.service.validation.ReservationValidator;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import org.junit.runner.RunWith;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.test.util.ReflectionTestUtils;
 
+import java.time.Clock;
 import java.time.LocalDateTime;
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
 
+import static org.hamcrest.CoreMatchers.not;
 import static org.hamcrest.CoreMatchers.notNullValue;
 import static org.junit.Assert.assertThat;
 import static org.hamcrest.CoreMatchers.is;
@@ -39,12 +54,16 @@ public class ReservationServiceTest {
   private static final String RESERVATION_THIRTY_DAYS_ADVANCE_EX = "Camp cannot be booked more than 30 days in advance";
   private static final String END_DAY_IS_BEFORE_EX = "End Date should be bigger than Start Date";
   private static final String ALREADY_BOOKED_EX = "Cannot book, due conflicts with other reservations";
+  private static final String STALE_RESERVATION_EX = "Reservation was modified since it was read";
   private static final String EMAIL = "someEmail@gmail.com";
   private static final String UID = UUID.randomUUID().toString();
   private static final String NEW_FULL_NAME = "NEW NAME";
   private static final String NEW_EMAIL = "NEW_EMAIL";
   private static final LocalDateTime START_DATE = LocalDateTime.now().plusDays(2);
   private static final LocalDateTime END_DATE = START_DATE.plusDays(2);
+  private static final long START_DAY = START_DATE.toLocalDate().toEpochDay();
+  private static final long END_DAY = END_DATE.toLocalDate().toEpochDay();
+  private static final Long VERSION = 3L;
 
   @Mock
   private Reservation reservation;
@@ -55,17 +74,27 @@ public class ReservationServiceTest {
   @Mock
   private ReservationRepository reservationRepository;
   @Mock
-  private LoadingCache<CacheKey,List<LocalDateTime>> cache;
+  private ReservationDayRepository reservationDayRepository;
+  @Mock
+  private LoadingCache<CacheKey,BlockAvailability> cache;
+  @Mock
+  private DayOccupancyIndex occupancyIndex;
+  @Mock
+  private ReadYourWrites readYourWrites;
+  @Spy
+  private StayCalendar stayCalendar = new StayCalendar();
+  @Spy
+  private ReservationValidator reservationValidator = new ReservationValidator();
   @InjectMocks
   private ReservationService reservationService;
 
   @Rule
   public ExpectedException expectedException = ExpectedException.none();
 
-  private ConcurrentMap<CacheKey,List<LocalDateTime>> map = new ConcurrentHashMap<>();
-
   @Before
   public void setUp(){
+    ReflectionTestUtils.setField(stayCalendar,"clock",Clock.systemDefaultZone());
+    ReflectionTestUtils.setField(reservationValidator,"stayCalendar",stayCalendar);
     when(reservation.getEmail()).thenReturn(EMAIL);
 
     when(reservation.getStartDate()).thenReturn(START_DATE);
@@ -79,25 +108,24 @@ public class ReservationServiceTest {
 
     when(reservationRepository.findById(eq(UID))).thenReturn(Optional.of(reservation));
 
-    when(cache.asMap()).thenReturn(map);
-    when(cache.getUnchecked(any(CacheKey.class))).thenReturn(new ArrayList<>());
+    when(cache.getUnchecked(any(CacheKey.class))).thenReturn(new BlockAvailability(0L));
 
-    CacheKey key = CacheKey.builder()
-                           .startDate(LocalDateTime.now().plusDays(2))
-                           .endDate(LocalDateTime.now().plusDays(5))
-                           .build();
-    map.put(key,new ArrayList<>());
+    when(occupancyIndex.tryClaim(anyLong(),anyLong())).thenReturn(true);
+    when(occupancyIndex.tryClaim(anyLong(),anyLong(),anyLong(),anyLong())).thenReturn(true);
   }
 
   @Test
   public void testFindById(){
+    readThroughReadYourWrites();
     Reservation r = reservationService.findById(UID);
     verify(reservationRepository).findById(UID);
+    verify(readYourWrites).read(eq(UID),any());
     assertThat(r,is(reservation));
   }
 
   @Test
   public void testFindByIdNotFound(){
+    readThroughReadYourWrites();
     when(reservationRepository.findById(eq(UID))).thenReturn(Optional.empty());
     expectedException.expect(ReservationNotFoundException.class);
     expectedException.expectMessage(RESERVATION_NOT_FOUND_EX);
@@ -105,11 +133,32 @@ public class ReservationServiceTest {
     verify(reservationRepository).findById(eq(UID));
   }
 
+  @Test
+  public void testFindByIdMissingOnTheReplicaIsReadFromThePrimary(){
+    when(readYourWrites.read(eq(UID),any())).thenReturn(Optional.empty());
+    when(readYourWrites.readMissOnPrimary(any())).thenAnswer(invocation -> ((Supplier<?>) invocation.getArgument(0)).get());
+    assertThat(reservationService.findById(UID),is(reservation));
+    verify(reservationRepository).findById(UID);
+  }
+
+  @Test
+  public void testRefreshOccupancyInvalidatesTheChangedBlocks(){
+    when(occupancyIndex.reload()).thenReturn(Arrays.asList(Stay.of(START_DAY,END_DAY)));
+    reservationService.refreshOccupancy();
+    verify(cache).invalidateAll(eq(blocksOf(START_DATE,END_DATE)));
+  }
+
   @Test
   public void testCreateReservation(){
     reservationService.createReservation(reservation);
     verify(reservationRepository).save(eq(reservation));
-    verify(cache).invalidateAll(any());
+    verify(reservationDayRepository).saveAll(argThat(days -> ((List<?>) days).size() == 2));
+    verify(reservationDayRepository).flush();
+    verify(occupancyIndex).tryClaim(START_DAY,END_DAY);
+    verify(occupancyIndex,never()).release(anyLong(),anyLong());
+    verify(cache).invalidateAll(eq(blocksOf(START_DATE,END_DATE)));
+    verify(readYourWrites).wrote(any());
+    verify(cache,never()).getUnchecked(any());
   }
 
   @Test
@@ -150,12 +199,46 @@ public class ReservationServiceTest {
 
   @Test
   public void testCreateReservationOverlaps(){
-    when(reservationRepository.countReservationThatOverlapsWith(eq(START_DATE),eq(END_DATE))).thenReturn(1l);
+    when(reservationRepository.existsReservationThatOverlapsWith(eq(START_DATE),eq(END_DATE))).thenReturn(true);
     expectedException.expect(AlreadyBookedException.class);
     expectedException.expectMessage(ALREADY_BOOKED_EX);
-    reservationService.createReservation(reservation);
-    verify(reservationRepository,never()).save(any());
-    verify(reservationRepository).countReservationThatOverlapsWith(any(),any());
+    try{
+      reservationService.createReservation(reservation);
+    }finally {
+      verify(reservationRepository,never()).save(any());
+      verify(reservationRepository).existsReservationThatOverlapsWith(any(),any());
+      verify(occupancyIndex).release(START_DAY,END_DAY);
+      verify(cache).invalidateAll(eq(blocksOf(START_DATE,END_DATE)));
+    }
+  }
+
+  @Test
+  public void testCreateReservationWhenDaysAreTakenInDatabase(){
+    doThrow(new DataIntegrityViolationException("PRIMARY KEY ON RESERVATION_DAY")).when(reservationDayRepository).flush();
+    expectedException.expect(AlreadyBookedException.class);
+    expectedException.expectMessage(ALREADY_BOOKED_EX);
+    try{
+      reservationService.createReservation(reservation);
+    }finally {
+      InOrder inOrder = inOrder(occupancyIndex,cache);
+      inOrder.verify(occupancyIndex).release(START_DAY,END_DAY);
+      inOrder.verify(cache).invalidateAll(eq(blocksOf(START_DATE,END_DATE)));
+    }
+  }
+
+  @Test
+  public void testCreateReservationWhenDaysAreAlreadyClaimed(){
+    when(occupancyIndex.tryClaim(START_DAY,END_DAY)).thenReturn(false);
+    expectedException.expect(AlreadyBookedException.class);
+    expectedException.expectMessage(ALREADY_BOOKED_EX);
+    try{
+      reservationService.createReservation(reservation);
+    }finally {
+      verify(reservationRepository,never()).existsReservationThatOverlapsWith(any(),any());
+      verify(reservationRepository,never()).save(any());
+      verify(reservationDayRepository,never()).saveAll(any());
+      verify(occupancyIndex,never()).release(anyLong(),anyLong());
+    }
   }
 
   @Test
@@ -163,6 +246,10 @@ public class ReservationServiceTest {
     reservationService.deleteReservation(UID,EMAIL);
     reservationRepository.delete(any());
     reservationRepository.findById(eq(UID));
+    verify(reservationDayRepository).deleteByReservationUid(UID);
+    verify(occupancyIndex).release(START_DAY,END_DAY);
+    verify(cache).invalidateAll(eq(blocksOf(START_DATE,END_DATE)));
+    verify(readYourWrites).wrote(UID);
   }
 
   @Test
@@ -188,26 +275,113 @@ public class ReservationServiceTest {
   @Test
   public void testUpdateEntity(){
     when(reservationRepository.save(any())).thenReturn(newReservation);
-    Reservation reservation = reservationService.updateReservation(reservationRequest,UID);
+    Reservation reservation = reservationService.updateReservation(reservationRequest,UID,null);
     verify(reservationRepository).save(any());
     assertThat(reservation.getEmail(),is(NEW_EMAIL));
     assertThat(reservation.getFullName(),is(NEW_FULL_NAME));
+    verify(reservationDayRepository).deleteByReservationUid(UID);
+    verify(reservationDayRepository).saveAll(any());
+    verify(occupancyIndex).tryClaim(START_DAY,END_DAY,START_DAY,END_DAY);
+    verify(occupancyIndex).release(START_DAY,END_DAY,START_DAY,END_DAY);
+    verify(readYourWrites).wrote(UID);
+  }
+
+  @Test
+  public void testUpdateWhenDaysAreAlreadyClaimed(){
+    when(occupancyIndex.tryClaim(anyLong(),anyLong(),anyLong(),anyLong())).thenReturn(false);
+    expectedException.expect(AlreadyBookedException.class);
+    expectedException.expectMessage(ALREADY_BOOKED_EX);
+    try{
+      reservationService.updateReservation(reservationRequest,UID,null);
+    }finally {
+      verify(reservationRepository,never()).save(any());
+      verify(reservationDayRepository,never()).deleteByReservationUid(any());
+    }
   }
 
   @Test
   public void testCannotUpdate(){
-    when(reservationRepository.countReservationThatOverlapsWith(eq(START_DATE),eq(END_DATE))).thenReturn(1l);
+    when(reservation.getUid()).thenReturn(UID);
+    when(reservationRepository.existsOtherReservationThatOverlapsWith(eq(UID),eq(START_DATE),eq(END_DATE))).thenReturn(true);
     expectedException.expect(AlreadyBookedException.class);
     expectedException.expectMessage(ALREADY_BOOKED_EX);
-    reservationService.updateReservation(reservationRequest,UID);
-    verify(reservationRepository,never()).save(any());
+    try{
+      reservationService.updateReservation(reservationRequest,UID,null);
+    }finally {
+      verify(reservationRepository,never()).save(any());
+      verify(reservationRepository,never()).existsReservationThatOverlapsWith(any(),any());
+      verify(cache).invalidateAll(eq(blocksOf(START_DATE,END_DATE)));
+    }
+  }
+
+  @Test
+  public void testUpdateWithTheVersionRead(){
+    when(reservation.getVersion()).thenReturn(VERSION);
+    when(reservationRepository.save(any())).thenReturn(newReservation);
+    assertThat(reservationService.updateReservation(reservationRequest,UID,VERSION),is(newReservation));
+  }
+
+  @Test
+  public void testUpdateWithAStaleVersion(){
+    when(reservation.getVersion()).thenReturn(VERSION + 1);
+    expectedException.expect(StaleReservationException.class);
+    expectedException.expectMessage(STALE_RESERVATION_EX);
+    try{
+      reservationService.updateReservation(reservationRequest,UID,VERSION);
+    }finally {
+      verify(reservation,never()).replaceWith(any());
+      verify(occupancyIndex,never()).tryClaim(anyLong(),anyLong(),anyLong(),anyLong());
+    }
+  }
+
+  @Test
+  public void testConcurrentUpdateFailsOnFlush(){
+    doThrow(new ObjectOptimisticLockingFailureException(Reservation.class,UID)).when(reservationDayRepository).flush();
+    expectedException.expect(StaleReservationException.class);
+    expectedException.expectMessage(STALE_RESERVATION_EX);
+    try{
+      reservationService.updateReservation(reservationRequest,UID,null);
+    }finally {
+      InOrder inOrder = inOrder(occupancyIndex,cache);
+      inOrder.verify(occupancyIndex).release(START_DAY,END_DAY,START_DAY,END_DAY);
+      inOrder.verify(cache).invalidateAll(eq(blocksOf(START_DATE,END_DATE)));
+      verify(readYourWrites,never()).wrote(any());
+    }
   }
 
   @Test
   public void testCheckAvailability(){
-    List<LocalDateTime> list = reservationService.findAvailability(START_DATE,END_DATE);
-    verify(cache).getUnchecked(any());
+    List<LocalDateTime> list = reservationService.findAvailability(Stay.of(START_DAY,END_DAY)).dates();
+    verify(cache,times(blocksOf(START_DATE,END_DATE).size())).getUnchecked(any());
     assertThat(list,is(notNullValue()));
   }
 
+  @Test
+  public void testCheckAvailabilityTrimsBlocksToTheWindow(){
+    LocalDateTime firstDay = START_DATE.toLocalDate().atTime(12,0);
+    when(cache.getUnchecked(any(CacheKey.class))).thenReturn(new BlockAvailability(-1L));
+    List<LocalDateTime> list = reservationService.findAvailability(Stay.of(START_DAY,END_DAY)).dates();
+    assertThat(list,is(Arrays.asList(firstDay,firstDay.plusDays(1))));
+  }
+
+  @Test
+  public void testAvailabilityHashFollowsTheWindowContent(){
+    long startDay = CacheKey.BLOCK_DAYS * 600L - 1;
+    when(cache.getUnchecked(CacheKey.ofDay(startDay))).thenReturn(new BlockAvailability(-1L));
+    when(cache.getUnchecked(CacheKey.ofDay(startDay + 1))).thenReturn(new BlockAvailability(-1L),new BlockAvailability(1L),new BlockAvailability(-2L));
+    AvailabilitySnapshot snapshot = reservationService.findAvailability(Stay.of(startDay,startDay + 2));
+    AvailabilitySnapshot outsideTheWindow = reservationService.findAvailability(Stay.of(startDay,startDay + 2));
+    AvailabilitySnapshot booked = reservationService.findAvailability(Stay.of(startDay,startDay + 2));
+    assertThat(snapshot.freeDays().count(),is(2));
+    assertThat(outsideTheWindow.contentHash(),is(snapshot.contentHash()));
+    assertThat(booked.contentHash(),not(snapshot.contentHash()));
+  }
+
+  private List<CacheKey> blocksOf(LocalDateTime start, LocalDateTime end){
+    return CacheKey.blocksBetween(start.toLocalDate().toEpochDay(),end.toLocalDate().toEpochDay());
+  }
+
+  private void readThroughReadYourWrites(){
+    when(readYourWrites.read(anyString(),any())).thenAnswer(invocation -> ((Supplier<?>) invocation.getArgument(1)).get());
+  }
 }
@@ -0,0 +1,58 @@
+package com.upgrade.camp.service.calendar;
+
+import com.upgrade.camp.model.Stay;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class StayCalendarTest {
+
+  private static final ZoneId ZONE = ZoneId.of("Asia/Tokyo");
+  private static final LocalDate TODAY = LocalDate.of(2019,11,20);
+
+  private StayCalendar stayCalendar;
+
+  @Before
+  public void setUp(){
+    stayCalendar = calendarAt(TODAY.atTime(0,30).atZone(ZONE));
+  }
+
+  @Test
+  public void testTodayIsTheDateInTheClockZone(){
+    assertThat(stayCalendar.today(),is(TODAY.toEpochDay()));
+    assertThat(calendarAt(TODAY.atTime(23,59,59).atZone(ZONE)).today(),is(TODAY.toEpochDay()));
+    assertThat(calendarAt(LocalDate.of(1969,12,31).atTime(12,0).atZone(ZoneId.of("UTC"))).today(),is(-1L));
+  }
+
+  @Test
+  public void testNow(){
+    assertThat(stayCalendar.now(),is(TODAY.atTime(0,30)));
+  }
+
+  @Test
+  public void testAvailabilityWindowDefaultsToNextMonth(){
+    long today = TODAY.toEpochDay();
+    assertThat(stayCalendar.availabilityWindow(null,null),is(Stay.of(today + 1,today + 31)));
+  }
+
+  @Test
+  public void testAvailabilityWindowOfGivenDates(){
+    LocalDate start = TODAY.plusDays(3);
+    assertThat(stayCalendar.availabilityWindow(start,start.plusDays(5)),is(Stay.of(start.toEpochDay() + 1,start.toEpochDay() + 6)));
+    assertThat(stayCalendar.availabilityWindow(start,null),is(Stay.of(start.toEpochDay() + 1,start.toEpochDay() + 31)));
+  }
+
+  private static StayCalendar calendarAt(ZonedDateTime now){
+    StayCalendar calendar = new StayCalendar();
+    ReflectionTestUtils.setField(calendar,"clock",Clock.fixed(now.toInstant(),now.getZone()));
+    return calendar;
+  }
+}
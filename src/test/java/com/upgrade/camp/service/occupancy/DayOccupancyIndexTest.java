@@ -0,0 +1,190 @@
+package com.upgrade.camp.service.occupancy;
+
+import com.upgrade.camp.datasource.ReadYourWrites;
+import com.upgrade.camp.model.Reservation;
+import com.upgrade.camp.model.ReservationDates;
+import com.upgrade.camp.model.Stay;
+import com.upgrade.camp.repository.ReservationRepository;
+import com.upgrade.camp.service.calendar.StayCalendar;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class DayOccupancyIndexTest {
+
+  private static final long START_DAY = LocalDate.of(2019,11,30).toEpochDay();
+  private static final long END_DAY = START_DAY + 3;
+
+  private static final long TODAY = START_DAY - 1;
+
+  @Mock
+  private ReservationRepository reservationRepository;
+  @Mock
+  private StayCalendar stayCalendar;
+  @Mock
+  private ReadYourWrites readYourWrites;
+  @InjectMocks
+  private DayOccupancyIndex occupancyIndex;
+
+  private Reservation reservation;
+
+  @Before
+  public void setUp(){
+    reservation = Reservation.builder()
+                             .startDate(LocalDate.ofEpochDay(START_DAY).atTime(12,0,1))
+                             .endDate(LocalDate.ofEpochDay(END_DAY).atTime(12,0,0))
+                             .build();
+    when(stayCalendar.today()).thenReturn(TODAY);
+    when(readYourWrites.onPrimary(any())).thenAnswer(invocation -> ((Supplier<?>) invocation.getArgument(0)).get());
+    when(reservationRepository.findDatesCheckingOutAfter(Stay.checkInOf(TODAY)))
+            .thenReturn(Arrays.asList(new ReservationDates(reservation.getStartDate(),reservation.getEndDate())));
+    occupancyIndex.reload();
+  }
+
+  @Test
+  public void testReloadOnlyReadsStaysStillToCheckOut(){
+    verify(reservationRepository).findDatesCheckingOutAfter(Stay.checkInOf(TODAY));
+    verify(readYourWrites).onPrimary(any());
+  }
+
+  @Test
+  public void testReloadOccupiesHalfOpenRange(){
+    assertThat(occupancyIndex.isOccupied(START_DAY - 1),is(false));
+    assertThat(occupancyIndex.isOccupied(START_DAY),is(true));
+    assertThat(occupancyIndex.isOccupied(END_DAY - 1),is(true));
+    assertThat(occupancyIndex.isOccupied(END_DAY),is(false));
+  }
+
+  @Test
+  public void testReloadReplacesWhatIsNoLongerStored(){
+    long movedStartDay = END_DAY + 10;
+    when(reservationRepository.findDatesCheckingOutAfter(Stay.checkInOf(TODAY)))
+            .thenReturn(Arrays.asList(new ReservationDates(Stay.checkInOf(movedStartDay),Stay.checkInOf(movedStartDay + 2))));
+    occupancyIndex.reload();
+    assertThat(occupancyIndex.isOccupied(START_DAY),is(false));
+    assertThat(occupancyIndex.isOccupied(movedStartDay),is(true));
+    assertThat(occupancyIndex.isOccupied(movedStartDay + 1),is(true));
+    assertThat(occupancyIndex.isOccupied(movedStartDay + 2),is(false));
+  }
+
+  @Test
+  public void testReloadReturnsTheWordsItChanged(){
+    long movedStartDay = END_DAY + 100;
+    when(reservationRepository.findDatesCheckingOutAfter(Stay.checkInOf(TODAY)))
+            .thenReturn(Arrays.asList(new ReservationDates(Stay.checkInOf(movedStartDay),Stay.checkInOf(movedStartDay + 1))));
+    List<Stay> changed = occupancyIndex.reload();
+    assertThat(changed.size(),is(2));
+    assertThat(changed.get(0).contains(START_DAY),is(true));
+    assertThat(changed.get(1).contains(movedStartDay),is(true));
+    assertThat(occupancyIndex.reload().isEmpty(),is(true));
+  }
+
+  @Test
+  public void testReloadKeepsWhatChangedWhileTheQueryRan(){
+    long bookedDay = END_DAY + 1;
+    List<ReservationDates> stored = Arrays.asList(new ReservationDates(reservation.getStartDate(),reservation.getEndDate()));
+    when(reservationRepository.findDatesCheckingOutAfter(Stay.checkInOf(TODAY))).thenAnswer(invocation -> {
+      occupancyIndex.occupy(bookedDay,bookedDay + 1);
+      occupancyIndex.release(START_DAY,START_DAY + 1);
+      return stored;
+    });
+    occupancyIndex.reload();
+    assertThat(occupancyIndex.isOccupied(bookedDay),is(true));
+    assertThat(occupancyIndex.isOccupied(START_DAY),is(false));
+    assertThat(occupancyIndex.isOccupied(START_DAY + 1),is(true));
+  }
+
+  @Test
+  public void testForEachFreeDaySkipsOccupiedDays(){
+    List<Long> freeDays = new ArrayList<>();
+    occupancyIndex.forEachFreeDay(START_DAY - 2,END_DAY + 2,freeDays::add);
+    assertThat(freeDays,is(Arrays.asList(START_DAY - 2,START_DAY - 1,END_DAY,END_DAY + 1)));
+  }
+
+  @Test
+  public void testRelease(){
+    occupancyIndex.release(START_DAY,END_DAY);
+    List<Long> freeDays = new ArrayList<>();
+    occupancyIndex.forEachFreeDay(START_DAY,END_DAY,freeDays::add);
+    assertThat(freeDays,is(Arrays.asList(START_DAY,START_DAY + 1,START_DAY + 2)));
+  }
+
+  @Test
+  public void testForEachFreeDayOutsideCapacity(){
+    List<Long> freeDays = new ArrayList<>();
+    occupancyIndex.forEachFreeDay(-2,1,freeDays::add);
+    assertThat(freeDays,is(Arrays.asList(-2L,-1L,0L)));
+  }
+
+  @Test
+  public void testFreeMaskAcrossWords(){
+    long wordStart = START_DAY & ~63;
+    long windowStart = wordStart + 60;
+    occupancyIndex.occupy(wordStart + 62,wordStart + 66);
+    long freeDays = occupancyIndex.freeMask(windowStart,windowStart + 32);
+    assertThat(freeDays & 0xFF,is(0b11000011L));
+    assertThat(Long.bitCount(freeDays),is(28));
+  }
+
+  @Test
+  public void testFreeMaskOutsideCapacity(){
+    assertThat(occupancyIndex.freeMask(-32,0),is(0xFFFFFFFFL));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testFreeMaskLongerThanAWord(){
+    occupancyIndex.freeMask(START_DAY,START_DAY + 65);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testOccupyOutsideCapacity(){
+    occupancyIndex.occupy(-1,1);
+  }
+
+  @Test
+  public void testTryClaimIsAllOrNothing(){
+    long wordEnd = (END_DAY | 63) + 1;
+    assertThat(occupancyIndex.tryClaim(wordEnd + 1,wordEnd + 2),is(true));
+    assertThat(occupancyIndex.tryClaim(wordEnd - 3,wordEnd + 3),is(false));
+    assertThat(occupancyIndex.isOccupied(wordEnd - 3),is(false));
+    assertThat(occupancyIndex.isOccupied(wordEnd),is(false));
+    assertThat(occupancyIndex.tryClaim(wordEnd - 3,wordEnd + 1),is(true));
+  }
+
+  @Test
+  public void testTryClaimSkipsOwnedDays(){
+    assertThat(occupancyIndex.tryClaim(START_DAY + 1,END_DAY + 1),is(false));
+    assertThat(occupancyIndex.tryClaim(START_DAY + 1,END_DAY + 1,START_DAY,END_DAY),is(true));
+    occupancyIndex.release(START_DAY,END_DAY,START_DAY + 1,END_DAY + 1);
+    List<Long> freeDays = new ArrayList<>();
+    occupancyIndex.forEachFreeDay(START_DAY,END_DAY + 2,freeDays::add);
+    assertThat(freeDays,is(Arrays.asList(START_DAY,END_DAY + 1)));
+  }
+
+  @Test
+  public void testConcurrentClaimsOnTheSameDaysHaveOneWinner(){
+    long day = END_DAY + 10;
+    long winners = IntStream.range(0,64)
+                            .parallel()
+                            .filter(i -> occupancyIndex.tryClaim(day + (i % 2),day + 3))
+                            .count();
+    assertThat(winners,is(1L));
+  }
+}
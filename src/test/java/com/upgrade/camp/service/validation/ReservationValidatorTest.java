@@ -0,0 +1,107 @@
+package com.upgrade.camp.service.validation;
+
+import com.upgrade.camp.model.Reservation;
+import com.upgrade.camp.service.calendar.StayCalendar;
+import com.upgrade.camp.service.exception.ModelConstraintReservation;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class ReservationValidatorTest {
+
+  private static final ZoneId ZONE = ZoneId.of("America/Montevideo");
+  private static final LocalDate TODAY = LocalDate.of(2019,11,20);
+  private static final String EMAIL = "someEmail@gmail.com";
+
+  private ReservationValidator reservationValidator;
+
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
+
+  @Before
+  public void setUp(){
+    StayCalendar stayCalendar = new StayCalendar();
+    ReflectionTestUtils.setField(stayCalendar,"clock",Clock.fixed(TODAY.atTime(23,30).atZone(ZONE).toInstant(),ZONE));
+    reservationValidator = new ReservationValidator();
+    ReflectionTestUtils.setField(reservationValidator,"stayCalendar",stayCalendar);
+  }
+
+  @Test
+  public void testValidReservation(){
+    Reservation reservation = reservation(EMAIL,1,4);
+    assertThat(reservationValidator.findViolations(reservation),is(Collections.emptyList()));
+    reservationValidator.validate(reservation);
+  }
+
+  @Test
+  public void testInvalidEmail(){
+    assertThat(reservationValidator.findViolations(reservation("someEmail",1,2)),is(Collections.singletonList(ReservationValidator.INVALID_EMAIL)));
+  }
+
+  @Test
+  public void testStayLongerThanThreeNights(){
+    assertThat(reservationValidator.findViolations(reservation(EMAIL,1,5)),is(Collections.singletonList(ReservationValidator.STAY_TOO_LONG)));
+  }
+
+  @Test
+  public void testMoreThanThirtyDaysInAdvance(){
+    assertThat(reservationValidator.findViolations(reservation(EMAIL,30,31)),is(Collections.emptyList()));
+    assertThat(reservationValidator.findViolations(reservation(EMAIL,31,32)),is(Collections.singletonList(ReservationValidator.TOO_FAR_IN_ADVANCE)));
+  }
+
+  @Test
+  public void testSameDay(){
+    assertThat(reservationValidator.findViolations(reservation(EMAIL,0,1)),is(Collections.singletonList(ReservationValidator.SAME_DAY)));
+  }
+
+  @Test
+  public void testEndNotAfterStart(){
+    assertThat(reservationValidator.findViolations(reservation(EMAIL,3,2)),is(Collections.singletonList(ReservationValidator.END_BEFORE_START)));
+    assertThat(reservationValidator.findViolations(reservation(EMAIL,3,3)),is(Collections.singletonList(ReservationValidator.END_BEFORE_START)));
+  }
+
+  /**
+   * only the dates count, a stay is never a night shorter or longer because of the time of day
+   */
+  @Test
+  public void testTimeOfDayIsIgnored(){
+    Reservation reservation = Reservation.builder().email(EMAIL)
+                                         .startDate(TODAY.plusDays(1).atTime(23,59))
+                                         .endDate(TODAY.plusDays(4).atTime(0,1))
+                                         .build();
+    assertThat(reservationValidator.findViolations(reservation),is(Collections.emptyList()));
+  }
+
+  @Test
+  public void testReportsEveryViolation(){
+    Reservation reservation = reservation("someEmail",-2,-3);
+    expectedException.expect(ModelConstraintReservation.class);
+    expectedException.expectMessage(ReservationValidator.INVALID_EMAIL);
+    expectedException.expectMessage(ReservationValidator.SAME_DAY);
+    expectedException.expectMessage(ReservationValidator.END_BEFORE_START);
+    try{
+      reservationValidator.validate(reservation);
+    }catch (ModelConstraintReservation e){
+      assertThat(e.getViolations(),is(Arrays.asList(ReservationValidator.INVALID_EMAIL,ReservationValidator.SAME_DAY,ReservationValidator.END_BEFORE_START)));
+      throw e;
+    }
+  }
+
+  private static Reservation reservation(String email, int startOffset, int endOffset){
+    LocalDateTime start = TODAY.plusDays(startOffset).atTime(12,0);
+    LocalDateTime end = TODAY.plusDays(endOffset).atTime(12,0);
+    return Reservation.builder().email(email).fullName("NAME").startDate(start).endDate(end).build();
+  }
+}
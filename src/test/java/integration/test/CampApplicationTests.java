@@ -1,13 +1,22 @@
 package integration.test;
 
+import com.google.common.base.Strings;
+import com.google.common.cache.LoadingCache;
 import com.google.gson.*;
 import com.google.gson.JsonDeserializer;
 import com.upgrade.camp.CampApplication;
 import com.upgrade.camp.controller.request.ReservationRequest;
+import com.upgrade.camp.guava.BlockAvailability;
+import com.upgrade.camp.guava.CacheKey;
+import com.upgrade.camp.controller.response.AvailabilityFormat;
 import com.upgrade.camp.controller.response.AvailableDaysResponse;
 import com.upgrade.camp.controller.response.ReservationResponse;
 import com.upgrade.camp.model.Reservation;
+import com.upgrade.camp.model.ReservationDates;
+import com.upgrade.camp.model.Stay;
+import com.upgrade.camp.repository.ReservationDayRepository;
 import com.upgrade.camp.repository.ReservationRepository;
+import com.upgrade.camp.service.occupancy.DayOccupancyIndex;
 import lombok.SneakyThrows;
 import org.junit.After;
 import org.junit.Before;
@@ -16,6 +25,7 @@ import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.junit4.SpringRunner;
@@ -24,8 +34,11 @@ import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 
 import java.lang.reflect.Type;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 
@@ -52,6 +65,12 @@ public class CampApplicationTests {
   private MockMvc mockMvc;
   @Autowired
   private ReservationRepository reservationRepository;
+  @Autowired
+  private ReservationDayRepository reservationDayRepository;
+  @Autowired
+  private DayOccupancyIndex occupancyIndex;
+  @Autowired
+  private LoadingCache<CacheKey,BlockAvailability> loadingCache;
   private Gson gson;
 
   private ReservationRequest reservationRequest;
@@ -73,6 +92,9 @@ public class CampApplicationTests {
   @SneakyThrows
   public void cleanUp(){
     reservationRepository.truncate();
+    reservationDayRepository.truncate();
+    occupancyIndex.reload();
+    loadingCache.invalidateAll();
     Thread.sleep(1000);
   }
 
@@ -99,6 +121,51 @@ public class CampApplicationTests {
     assertThat(result.getResponse().getStatus(),is(HttpStatus.OK.value()));
   }
 
+  @Test
+  @SneakyThrows
+  public void checkAvailabilityAsBitmaskTest(){
+    createReservation();
+    MvcResult result = mockMvc.perform(MockMvcRequestBuilders.get("/reservation/availability")
+                                                             .accept(AvailabilityFormat.BITMASK.getMediaType()))
+                                                             .andReturn();
+    assertThat(result.getResponse().getStatus(),is(HttpStatus.OK.value()));
+    assertThat(result.getResponse().getContentType(),startsWith(AvailabilityFormat.BITMASK_VALUE));
+    JsonObject response = gson.fromJson(result.getResponse().getContentAsString(),JsonObject.class).getAsJsonObject("response");
+    assertThat(response.get("start").getAsString(),is(LocalDate.now().plusDays(1).toString()));
+    assertThat(response.get("free").getAsString(),is("100" + Strings.repeat("1",27)));
+  }
+
+  @Test
+  @SneakyThrows
+  public void checkAvailabilityAsRangesTest(){
+    createReservation();
+    MvcResult result = mockMvc.perform(MockMvcRequestBuilders.get("/reservation/availability")
+                                                             .param("format","ranges")
+                                                             .accept(MediaType.APPLICATION_JSON))
+                                                             .andReturn();
+    assertThat(result.getResponse().getStatus(),is(HttpStatus.OK.value()));
+    JsonObject response = gson.fromJson(result.getResponse().getContentAsString(),JsonObject.class).getAsJsonObject("response");
+    assertThat(response.get("free").toString(),is("[[0,1],[3,27]]"));
+  }
+
+  @Test
+  @SneakyThrows
+  public void checkAvailabilityNotModifiedUntilABookingTest(){
+    String eTag = checkAvailability().getResponse().getHeader(HttpHeaders.ETAG);
+    MvcResult notModified = mockMvc.perform(MockMvcRequestBuilders.get("/reservation/availability")
+                                                                  .header(HttpHeaders.IF_NONE_MATCH,eTag))
+                                                                  .andReturn();
+    assertThat(notModified.getResponse().getStatus(),is(HttpStatus.NOT_MODIFIED.value()));
+    assertThat(notModified.getResponse().getContentAsByteArray().length,is(0));
+    createReservation();
+    MvcResult modified = mockMvc.perform(MockMvcRequestBuilders.get("/reservation/availability")
+                                                               .header(HttpHeaders.IF_NONE_MATCH,eTag))
+                                                               .andReturn();
+    assertThat(modified.getResponse().getStatus(),is(HttpStatus.OK.value()));
+    assertThat(modified.getResponse().getHeader(HttpHeaders.ETAG),not(eTag));
+    assertThat(gson.fromJson(modified.getResponse().getContentAsString(),AvailableDaysResponse.class).getResponse().size(),is(28));
+  }
+
   @Test
   @SneakyThrows
   public void testCreateReservationTest(){
@@ -160,6 +227,150 @@ public class CampApplicationTests {
     assertThat(reservationResponse.getMessage(),is(NOT_FOUND_EX));
   }
 
+  @Test
+  @SneakyThrows
+  public void reservationDaysFollowTheReservationTest(){
+    MvcResult creationResult = createReservation();
+    String uid = gson.fromJson(creationResult.getResponse().getContentAsString(),ReservationResponse.class).getResponse().getUid();
+    assertThat(reservationDayRepository.count(),is(2L));
+    deleteReservation(uid,EMAIL);
+    assertThat(reservationDayRepository.count(),is(0L));
+  }
+
+  /**
+   * another instance booked the days, so only the RESERVATION_DAY primary key knows about it
+   */
+  @Test
+  @SneakyThrows
+  public void createWithReservationInsideAnotherOnlyKnownByDatabaseTest(){
+    reservationRequest.setStartDate(LocalDateTime.now().plusDays(1));
+    reservationRequest.setEndDate(LocalDateTime.now().plusDays(4));
+    createReservation();
+    occupancyIndex.release(LocalDate.now().plusDays(1).toEpochDay(),LocalDate.now().plusDays(4).toEpochDay());
+    reservationRequest.setStartDate(LocalDateTime.now().plusDays(2));
+    reservationRequest.setEndDate(LocalDateTime.now().plusDays(3));
+    MvcResult result = createReservation();
+    ReservationResponse reservationResponse = gson.fromJson(result.getResponse().getContentAsString(),ReservationResponse.class);
+    assertThat(result.getResponse().getStatus(),is(HttpStatus.BAD_REQUEST.value()));
+    assertThat(reservationResponse.getMessage(),is(OVERLAPS_EX));
+    assertThat(reservationDayRepository.count(),is(3L));
+  }
+
+  /**
+   * a stored reservation enclosing the request, without RESERVATION_DAY rows, is only caught by the overlap query
+   */
+  @Test
+  @SneakyThrows
+  public void createWithReservationEnclosedByAnotherTest(){
+    Stay enclosing = Stay.of(LocalDate.now().plusDays(1).toEpochDay(),LocalDate.now().plusDays(5).toEpochDay());
+    reservationRepository.save(Reservation.builder()
+                                          .uid(UUID.randomUUID().toString())
+                                          .startDate(enclosing.checkIn())
+                                          .endDate(enclosing.checkOut())
+                                          .email(EMAIL)
+                                          .fullName(FULL_NAME)
+                                          .build());
+    MvcResult result = createReservation();
+    ReservationResponse reservationResponse = gson.fromJson(result.getResponse().getContentAsString(),ReservationResponse.class);
+    assertThat(result.getResponse().getStatus(),is(HttpStatus.BAD_REQUEST.value()));
+    assertThat(reservationResponse.getMessage(),is(OVERLAPS_EX));
+    assertThat(reservationDayRepository.count(),is(0L));
+  }
+
+  @Test
+  public void overlapQueryIsHalfOpenTest(){
+    long today = LocalDate.now().toEpochDay();
+    Stay stay = Stay.of(today + 2,today + 4);
+    reservationRepository.save(Reservation.builder()
+                                          .uid(UUID.randomUUID().toString())
+                                          .startDate(stay.checkIn())
+                                          .endDate(stay.checkOut())
+                                          .email(EMAIL)
+                                          .fullName(FULL_NAME)
+                                          .build());
+    assertThat(overlaps(Stay.of(today + 1,today + 5)),is(true));
+    assertThat(overlaps(Stay.of(today + 3,today + 4)),is(true));
+    assertThat(overlaps(Stay.of(today + 1,today + 3)),is(true));
+    assertThat(overlaps(Stay.of(today,today + 2)),is(false));
+    assertThat(overlaps(Stay.of(today + 4,today + 6)),is(false));
+  }
+
+  @Test
+  public void occupancyIndexReloadsOnlyStaysStillToCheckOutTest(){
+    long today = LocalDate.now().toEpochDay();
+    Stay past = Stay.of(today - 5,today - 2);
+    Stay future = Stay.of(today + 2,today + 4);
+    for(Stay stay : Arrays.asList(past,future)){
+      reservationRepository.save(Reservation.builder()
+                                            .uid(UUID.randomUUID().toString())
+                                            .startDate(stay.checkIn())
+                                            .endDate(stay.checkOut())
+                                            .email(EMAIL)
+                                            .fullName(FULL_NAME)
+                                            .build());
+    }
+    List<ReservationDates> dates = reservationRepository.findDatesCheckingOutAfter(Stay.checkInOf(today));
+    assertThat(dates,is(Arrays.asList(new ReservationDates(future.checkIn(),future.checkOut()))));
+    occupancyIndex.reload();
+    assertThat(occupancyIndex.isOccupied(today - 3),is(false));
+    assertThat(occupancyIndex.isOccupied(today + 3),is(true));
+  }
+
+  @Test
+  @SneakyThrows
+  public void updateOverlappingItsOwnDatesTest(){
+    MvcResult creationResult = createReservation();
+    String uid = gson.fromJson(creationResult.getResponse().getContentAsString(),ReservationResponse.class).getResponse().getUid();
+    assertThat(creationResult.getResponse().getHeader(HttpHeaders.ETAG),is("\"0\""));
+    reservationRequest.setStartDate(LocalDateTime.now().plusDays(3));
+    reservationRequest.setEndDate(LocalDateTime.now().plusDays(5));
+    MvcResult result = updateReservation(uid,"\"0\"");
+    assertThat(result.getResponse().getStatus(),is(HttpStatus.OK.value()));
+    assertThat(result.getResponse().getHeader(HttpHeaders.ETAG),is("\"1\""));
+    assertThat(reservationDayRepository.count(),is(2L));
+    assertThat(findById(uid).getResponse().getHeader(HttpHeaders.ETAG),is("\"1\""));
+  }
+
+  @Test
+  @SneakyThrows
+  public void updateWithAStaleETagTest(){
+    MvcResult creationResult = createReservation();
+    String uid = gson.fromJson(creationResult.getResponse().getContentAsString(),ReservationResponse.class).getResponse().getUid();
+    reservationRequest.setFullName("first");
+    assertThat(updateReservation(uid,"\"0\"").getResponse().getStatus(),is(HttpStatus.OK.value()));
+    reservationRequest.setFullName("second");
+    MvcResult result = updateReservation(uid,"\"0\"");
+    assertThat(result.getResponse().getStatus(),is(HttpStatus.PRECONDITION_FAILED.value()));
+    assertThat(reservationRepository.findById(uid).get().getFullName(),is("first"));
+  }
+
+  /**
+   * both read version 0, whichever comes second fails on the version check or on the UPDATE itself
+   */
+  @Test
+  @SneakyThrows
+  public void concurrentUpdatesTest(){
+    MvcResult creationResult = createReservation();
+    String uid = gson.fromJson(creationResult.getResponse().getContentAsString(),ReservationResponse.class).getResponse().getUid();
+    String first = gson.toJson(ReservationRequest.builder()
+                                                        .startDate(reservationRequest.getStartDate())
+                                                        .endDate(reservationRequest.getEndDate())
+                                                        .email(EMAIL)
+                                                        .fullName("first")
+                                                        .build());
+    String second = gson.toJson(ReservationRequest.builder()
+                                                        .startDate(reservationRequest.getStartDate())
+                                                        .endDate(reservationRequest.getEndDate())
+                                                        .email(EMAIL)
+                                                        .fullName("second")
+                                                        .build());
+    CompletableFuture<MvcResult> future1 = CompletableFuture.supplyAsync(() -> updateReservation(uid,"\"0\"",first));
+    CompletableFuture<MvcResult> future2 = CompletableFuture.supplyAsync(() -> updateReservation(uid,"\"0\"",second));
+    List<Integer> statuses = Arrays.asList(future1.get().getResponse().getStatus(),future2.get().getResponse().getStatus());
+    assertThat(statuses,hasItems(HttpStatus.OK.value(),HttpStatus.PRECONDITION_FAILED.value()));
+    assertThat(reservationRepository.findById(uid).get().getVersion(),is(1L));
+  }
+
   @Test
   @SneakyThrows
   public void findByIdTest(){
@@ -180,6 +391,20 @@ public class CampApplicationTests {
     assertsOnConcurrentTest(future1.get(),future2.get());
   }
 
+  @Test
+  @SneakyThrows
+  public void prometheusExposesExecutionTimersTest(){
+    checkAvailability();
+    MvcResult result = mockMvc.perform(MockMvcRequestBuilders.get("/actuator/prometheus")).andReturn();
+    assertThat(result.getResponse().getStatus(),is(HttpStatus.OK.value()));
+    assertThat(result.getResponse().getContentAsString(),
+               containsString("camp_method_execution_seconds_bucket{exception=\"none\",method=\"ReservationController.checkAvailability\",outcome=\"SUCCESS\""));
+  }
+
+  private boolean overlaps(Stay stay){
+    return reservationRepository.existsReservationThatOverlapsWith(stay.checkIn(),stay.checkOut());
+  }
+
   @SneakyThrows
   private MvcResult checkAvailability(){
     return mockMvc.perform(MockMvcRequestBuilders.get("/reservation/availability")
@@ -202,6 +427,19 @@ public class CampApplicationTests {
                                                  .accept(MediaType.APPLICATION_JSON)).andReturn();
   }
 
+  private MvcResult updateReservation(String uid, String ifMatch){
+    return updateReservation(uid,ifMatch,gson.toJson(reservationRequest));
+  }
+
+  @SneakyThrows
+  private MvcResult updateReservation(String uid, String ifMatch, String content){
+    return mockMvc.perform(MockMvcRequestBuilders.put(format("/reservation/%s",uid))
+                                                 .header(HttpHeaders.IF_MATCH,ifMatch)
+                                                 .content(content)
+                                                 .contentType(MediaType.APPLICATION_JSON)
+                                                 .accept(MediaType.APPLICATION_JSON)).andReturn();
+  }
+
   @SneakyThrows
   private MvcResult deleteReservation(String uid,String email){
     return mockMvc.perform(MockMvcRequestBuilders.delete(format("/reservation/%s",uid))
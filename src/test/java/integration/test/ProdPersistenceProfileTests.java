@@ -0,0 +1,112 @@
+package integration.test;
+
+import com.upgrade.camp.CampApplication;
+import com.upgrade.camp.model.Reservation;
+import com.upgrade.camp.model.Stay;
+import com.upgrade.camp.repository.ReservationDayRepository;
+import com.upgrade.camp.repository.ReservationRepository;
+import com.upgrade.camp.service.ReservationService;
+import com.upgrade.camp.service.occupancy.DayOccupancyIndex;
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.orm.jpa.JpaProperties;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+
+/**
+ * boots the prod profile against a file-backed H2, the schema comes from the migration scripts
+ * and hibernate must accept it as is
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(
+    webEnvironment = SpringBootTest.WebEnvironment.NONE,
+    classes = CampApplication.class,
+    properties = "spring.datasource.url=jdbc:h2:file:./target/h2/camp-prod-test"
+)
+@ActiveProfiles("prod")
+public class ProdPersistenceProfileTests {
+
+  @Autowired
+  private DataSource dataSource;
+  @Autowired
+  private JdbcTemplate jdbcTemplate;
+  @Autowired
+  private JpaProperties jpaProperties;
+  @Autowired
+  private EntityManagerFactory entityManagerFactory;
+  @Autowired
+  private ReservationService reservationService;
+  @Autowired
+  private ReservationRepository reservationRepository;
+  @Autowired
+  private ReservationDayRepository reservationDayRepository;
+  @Autowired
+  private DayOccupancyIndex occupancyIndex;
+
+  @After
+  public void cleanUp(){
+    reservationRepository.truncate();
+    reservationDayRepository.truncate();
+    occupancyIndex.reload();
+  }
+
+  @Test
+  public void poolIsSizedTest(){
+    HikariDataSource hikari = (HikariDataSource) dataSource;
+    assertThat(hikari.getPoolName(),is("camp-pool"));
+    assertThat(hikari.getMaximumPoolSize(),is(10));
+    assertThat(hikari.getMinimumIdle(),is(10));
+    assertThat(hikari.getConnectionTimeout(),is(2000L));
+  }
+
+  @Test
+  public void writesAreBatchedAndNotLoggedTest(){
+    Map<String,Object> properties = entityManagerFactory.getProperties();
+    assertThat(properties.get("hibernate.jdbc.batch_size"),is("50"));
+    assertThat(properties.get("hibernate.order_inserts"),is("true"));
+    assertThat(properties.get("hibernate.order_updates"),is("true"));
+    assertThat(properties.get("hibernate.hbm2ddl.auto"),is("validate"));
+    assertThat(jpaProperties.isShowSql(),is(false));
+  }
+
+  @Test
+  public void migrationCreatesTheIndexesTest(){
+    List<String> indexes = jdbcTemplate.queryForList(
+        "SELECT INDEX_NAME FROM INFORMATION_SCHEMA.INDEXES WHERE TABLE_NAME IN ('RESERVATION','RESERVATION_DAY')",String.class);
+    assertThat(indexes,not(hasItem("IDX_RESERVATION_DATES")));
+    assertThat(indexes,hasItems("IDX_RESERVATION_OVERLAP","IDX_RESERVATION_EMAIL","IDX_RESERVATION_DAY_UID"));
+    List<String> datesColumns = jdbcTemplate.queryForList(
+        "SELECT COLUMN_NAME FROM INFORMATION_SCHEMA.INDEXES WHERE INDEX_NAME = 'IDX_RESERVATION_OVERLAP' ORDER BY ORDINAL_POSITION",String.class);
+    assertThat(datesColumns,is(Arrays.asList("END_DATE","START_DATE")));
+  }
+
+  @Test
+  public void bookingPersistsEveryNightTest(){
+    LocalDate checkIn = LocalDate.now().plusDays(2);
+    Stay stay = Stay.of(checkIn.toEpochDay(),checkIn.plusDays(3).toEpochDay());
+    Reservation reservation = Reservation.builder()
+                                         .startDate(stay.checkIn())
+                                         .endDate(stay.checkOut())
+                                         .email("email@email.com")
+                                         .fullName("full name")
+                                         .build();
+    reservationService.createReservation(reservation);
+    assertThat(reservationRepository.count(),is(1L));
+    assertThat(reservationDayRepository.count(),is(3L));
+  }
+}
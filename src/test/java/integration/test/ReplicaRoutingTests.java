@@ -0,0 +1,162 @@
+package integration.test;
+
+import com.upgrade.camp.CampApplication;
+import com.upgrade.camp.model.Reservation;
+import com.upgrade.camp.model.Stay;
+import com.upgrade.camp.repository.ReservationDayRepository;
+import com.upgrade.camp.repository.ReservationRepository;
+import com.upgrade.camp.service.ReservationService;
+import com.upgrade.camp.service.exception.ReservationNotFoundException;
+import com.upgrade.camp.service.occupancy.DayOccupancyIndex;
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.SneakyThrows;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+
+/**
+ * two unrelated H2 databases stand for the primary and the replica: nothing replicates, so where
+ * a row is read from tells which one served the transaction
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(
+    webEnvironment = SpringBootTest.WebEnvironment.NONE,
+    classes = CampApplication.class,
+    properties = {
+        "spring.datasource.url=jdbc:h2:mem:camp-primary;DB_CLOSE_DELAY=-1",
+        "camp.datasource.replica.url=jdbc:h2:mem:camp-replica;DB_CLOSE_DELAY=-1;" +
+            "INIT=RUNSCRIPT FROM 'classpath:db/schema/h2/01-create_reservation.sql'\\\\;" +
+            "RUNSCRIPT FROM 'classpath:db/schema/h2/02-overlap_index.sql'\\\\;" +
+            "RUNSCRIPT FROM 'classpath:db/schema/h2/03-reservation_version.sql'",
+        "camp.datasource.replica.username=sa",
+        "camp.datasource.replica.max-lag=500ms",
+        "camp.datasource.replica.hikari.pool-name=camp-replica-pool",
+        "camp.datasource.replica.hikari.maximum-pool-size=2"
+    }
+)
+public class ReplicaRoutingTests {
+
+  private static final String EMAIL = "email@email.com";
+  private static final String REPLICA_ONLY_UID = "replica-only";
+
+  @Autowired
+  @Qualifier("primaryDataSource")
+  private HikariDataSource primaryDataSource;
+  @Autowired
+  @Qualifier("replicaDataSource")
+  private HikariDataSource replicaDataSource;
+  @Autowired
+  private ReservationService reservationService;
+  @Autowired
+  private ReservationRepository reservationRepository;
+  @Autowired
+  private ReservationDayRepository reservationDayRepository;
+  @Autowired
+  private DayOccupancyIndex occupancyIndex;
+
+  private JdbcTemplate primary;
+  private JdbcTemplate replica;
+
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
+
+  @Before
+  public void setUp(){
+    primary = new JdbcTemplate(primaryDataSource);
+    replica = new JdbcTemplate(replicaDataSource);
+  }
+
+  @After
+  public void cleanUp(){
+    reservationRepository.truncate();
+    reservationDayRepository.truncate();
+    replica.update("DELETE FROM RESERVATION");
+    occupancyIndex.reload();
+  }
+
+  @Test
+  public void poolsAreSeparateTest(){
+    assertThat(replicaDataSource.getPoolName(),is("camp-replica-pool"));
+    assertThat(replicaDataSource.getMaximumPoolSize(),is(2));
+    assertThat(primaryDataSource,is(not(sameInstance(replicaDataSource))));
+  }
+
+  @Test
+  public void readOnlyLookupIsServedByTheReplicaTest(){
+    Stay stay = Stay.of(LocalDate.now().plusDays(2).toEpochDay(),LocalDate.now().plusDays(3).toEpochDay());
+    replica.update("INSERT INTO RESERVATION (UID, START_DATE, END_DATE, EMAIL, FULL_NAME) VALUES (?, ?, ?, ?, ?)",
+                   REPLICA_ONLY_UID,Timestamp.valueOf(stay.checkIn()),Timestamp.valueOf(stay.checkOut()),EMAIL,"full name");
+    assertThat(reservationService.findById(REPLICA_ONLY_UID).getUid(),is(REPLICA_ONLY_UID));
+    assertThat(reservationRepository.findById(REPLICA_ONLY_UID).isPresent(),is(true));
+  }
+
+  @Test
+  public void occupancyIndexIsLoadedFromThePrimaryTest(){
+    Stay stay = Stay.of(LocalDate.now().plusDays(2).toEpochDay(),LocalDate.now().plusDays(3).toEpochDay());
+    replica.update("INSERT INTO RESERVATION (UID, START_DATE, END_DATE, EMAIL, FULL_NAME) VALUES (?, ?, ?, ?, ?)",
+                   REPLICA_ONLY_UID,Timestamp.valueOf(stay.checkIn()),Timestamp.valueOf(stay.checkOut()),EMAIL,"full name");
+    occupancyIndex.reload();
+    assertThat(occupancyIndex.isOccupied(stay.getStartDay()),is(false));
+    book();
+    occupancyIndex.reload();
+    assertThat(occupancyIndex.isOccupied(stay.getStartDay()),is(true));
+  }
+
+  @Test
+  public void bookingIsWrittenToThePrimaryTest(){
+    String uid = book();
+    assertThat(primary.queryForObject("SELECT COUNT(*) FROM RESERVATION WHERE UID = ?",Long.class,uid),is(1L));
+    assertThat(replica.queryForObject("SELECT COUNT(*) FROM RESERVATION WHERE UID = ?",Long.class,uid),is(0L));
+  }
+
+  @Test
+  @SneakyThrows
+  public void bookingIsReadBackFromThePrimaryWithinTheLagTest(){
+    String uid = book();
+    assertThat(reservationService.findById(uid).getUid(),is(uid));
+    Thread.sleep(600);
+    assertThat(reservationRepository.findById(uid).isPresent(),is(false));
+    assertThat(reservationService.findById(uid).getUid(),is(uid));
+  }
+
+  @Test
+  public void bookingMissingOnTheReplicaIsReadFromThePrimaryTest(){
+    String uid = "written-elsewhere";
+    Stay stay = Stay.of(LocalDate.now().plusDays(2).toEpochDay(),LocalDate.now().plusDays(3).toEpochDay());
+    primary.update("INSERT INTO RESERVATION (UID, START_DATE, END_DATE, EMAIL, FULL_NAME) VALUES (?, ?, ?, ?, ?)",
+                   uid,Timestamp.valueOf(stay.checkIn()),Timestamp.valueOf(stay.checkOut()),EMAIL,"full name");
+    assertThat(reservationService.findById(uid).getUid(),is(uid));
+  }
+
+  @Test
+  public void reservationMissingEverywhereIsNotFoundTest(){
+    expectedException.expect(ReservationNotFoundException.class);
+    reservationService.findById("nowhere");
+  }
+
+  private String book(){
+    Stay stay = Stay.of(LocalDate.now().plusDays(2).toEpochDay(),LocalDate.now().plusDays(4).toEpochDay());
+    Reservation reservation = Reservation.builder()
+                                         .startDate(stay.checkIn())
+                                         .endDate(stay.checkOut())
+                                         .email(EMAIL)
+                                         .fullName("full name")
+                                         .build();
+    reservationService.createReservation(reservation);
+    return reservation.getUid();
+  }
+}